@@ -0,0 +1,64 @@
+package ch.holo.jipl;
+
+import ch.holo.jipl.Parser.BinaryOperation;
+
+public class Bytecode {
+
+	public static final int NUMBER = 0, STRING = 1, NULL = 2, SELF = 3, THIS = 4, POP = 5,
+			LOAD_SLOT = 6, LOAD_NAME = 7, ASSIGN_SLOT = 8, ASSIGN_NAME = 9, MODIFY_NAME = 10, COMPOUND_SLOT = 11, COMPOUND_NAME = 12,
+			BINARY = 13, UNARY = 14, JUMP = 15, JUMP_IF_FALSE = 16, PUSH_CONTEXT = 17, POP_CONTEXT = 18,
+			ENTER = 19, LEAVE_SET = 20, LEAVE_KEEP = 21, CALLABLE = 22, CALL = 23, FUNCTION = 24, EVAL = 25,
+			RETURN = 26, BREAK = 27, CONTINUE = 28,
+			WHILE_PREP = 29, FOR_PREP = 30, FORIN_PREP = 31, HANDLER = 32, WHILE_TEST = 33, FOR_TEST = 34, FORIN_TEST = 35,
+			LOOP_ADD = 36, WHILE_STEP = 37, FOR_STEP = 38, FORIN_STEP = 39, LOOP_END = 40, END = 41, SHORT_CIRCUIT = 42, TAIL_CALL = 43,
+			INVARIANT = 44, MEMO = 45, FOLDED = 46, METHOD = 47, MEMBER = 48, LIST = 49, LIST_ADD = 50;
+
+	public static final String[] NAMES = {"NUMBER", "STRING", "NULL", "SELF", "THIS", "POP",
+			"LOAD_SLOT", "LOAD_NAME", "ASSIGN_SLOT", "ASSIGN_NAME", "MODIFY_NAME", "COMPOUND_SLOT", "COMPOUND_NAME",
+			"BINARY", "UNARY", "JUMP", "JUMP_IF_FALSE", "PUSH_CONTEXT", "POP_CONTEXT",
+			"ENTER", "LEAVE_SET", "LEAVE_KEEP", "CALLABLE", "CALL", "FUNCTION", "EVAL",
+			"RETURN", "BREAK", "CONTINUE",
+			"WHILE_PREP", "FOR_PREP", "FORIN_PREP", "HANDLER", "WHILE_TEST", "FOR_TEST", "FORIN_TEST",
+			"LOOP_ADD", "WHILE_STEP", "FOR_STEP", "FORIN_STEP", "LOOP_END", "END", "SHORT_CIRCUIT", "TAIL_CALL",
+			"INVARIANT", "MEMO", "FOLDED", "METHOD", "MEMBER", "LIST", "LIST_ADD"};
+
+	public static final int[] OPERANDS = {1, 1, 0, 0, 0, 0,
+			3, 1, 2, 1, 1, 3, 2,
+			1, 1, 1, 1, 1, 0,
+			0, 0, 0, 1, 1, 1, 1,
+			0, 0, 0,
+			2, 4, 2, 2, 1, 3, 3,
+			0, 1, 2, 1, 1, 0, 2, 1,
+			2, 1, 2, 1, 0, 0, 0};
+
+	public static final int ADD = BinaryOperation.ADD, SUB = BinaryOperation.SUB, MULT = BinaryOperation.MULT, DIV = BinaryOperation.DIV,
+			EQUALS = BinaryOperation.EQUALS, NOT_EQUALS = BinaryOperation.NOT_EQUALS, LESS = BinaryOperation.LESS, LESS_EQUALS = BinaryOperation.LESS_EQUALS,
+			GREATER = BinaryOperation.GREATER, GREATER_EQUALS = BinaryOperation.GREATER_EQUALS, AND = BinaryOperation.AND, OR = BinaryOperation.OR,
+			NONE = BinaryOperation.NONE;
+	public static final int NEGATE = 0, NOT = 1, IDENTITY = 2;
+
+	// final, so a Bytecode handed to another thread without a lock is seen whole
+	protected final int[] code;
+	protected final Object[] constants;
+	protected final boolean raw;
+
+	public Bytecode(int[] code, Object[] constants, boolean raw) {
+		this.code = code;
+		this.constants = constants;
+		this.raw = raw;
+	}
+
+	public int[] getCode() { return code; }
+	public Object[] getConstants() { return constants; }
+
+	public String toString() {
+		String str = "";
+		for(int pc = 0; pc < code.length; pc += OPERANDS[code[pc]]+1) {
+			str += pc + "\t" + NAMES[code[pc]];
+			for(int i = 1; i <= OPERANDS[code[pc]]; i++) str += " " + code[pc+i];
+			str += "\n";
+		}
+		return str;
+	}
+
+}
\ No newline at end of file
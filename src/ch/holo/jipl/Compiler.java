@@ -0,0 +1,284 @@
+package ch.holo.jipl;
+
+import java.util.ArrayList;
+
+import ch.holo.jipl.Parser.BinaryOperation;
+import ch.holo.jipl.Parser.BreakNode;
+import ch.holo.jipl.Parser.CallNode;
+import ch.holo.jipl.Parser.CaseDataNode;
+import ch.holo.jipl.Parser.ContinueNode;
+import ch.holo.jipl.Parser.ForInNode;
+import ch.holo.jipl.Parser.ForNode;
+import ch.holo.jipl.Parser.FunctionDefNode;
+import ch.holo.jipl.Parser.IfNode;
+import ch.holo.jipl.Parser.InvariantNode;
+import ch.holo.jipl.Parser.ListNode;
+import ch.holo.jipl.Parser.NumberNode;
+import ch.holo.jipl.Parser.PointAccessNode;
+import ch.holo.jipl.Parser.ReturnNode;
+import ch.holo.jipl.Parser.StatementsNode;
+import ch.holo.jipl.Parser.StringNode;
+import ch.holo.jipl.Parser.ThisNode;
+import ch.holo.jipl.Parser.UnaryOperation;
+import ch.holo.jipl.Parser.VarAccessNode;
+import ch.holo.jipl.Parser.VarAddNode;
+import ch.holo.jipl.Parser.VarAssignNode;
+import ch.holo.jipl.Parser.VarDivNode;
+import ch.holo.jipl.Parser.VarModifyNode;
+import ch.holo.jipl.Parser.VarMultNode;
+import ch.holo.jipl.Parser.VarSubNode;
+import ch.holo.jipl.Parser.WhileNode;
+import ch.holo.jipl.Token.TokenType;
+
+/**
+ * Lowers a parsed tree to {@link Bytecode} for the {@link VM}.
+ * Nodes without a lowering are kept as constants and handed back to the {@link Interpreter}.
+ */
+public class Compiler {
+
+	private int[] code = new int[64];
+	private int length;
+	private ArrayList<Object> constants = new ArrayList<Object>();
+
+	public static Bytecode compile(Object node) {
+		Compiler compiler = new Compiler();
+		compiler.compileNode(node);
+		compiler.emit(Bytecode.END);
+		int[] code = new int[compiler.length];
+		System.arraycopy(compiler.code, 0, code, 0, code.length);
+		return new Bytecode(code, compiler.constants.toArray(), isRaw(node));
+	}
+
+	private static boolean isRaw(Object node) {
+		return node instanceof BinaryOperation || (node instanceof VarAddNode && ((VarAddNode) node).slot < 0);
+	}
+
+	private void compileNode(Object node) {
+		if(node instanceof NumberNode) {
+			NumberNode n = (NumberNode) node;
+			emit(Bytecode.NUMBER, constant(n.value));
+		} else if(node instanceof StringNode) {
+			StringNode n = (StringNode) node;
+			emit(Bytecode.STRING, constant(n.value));
+		} else if(node instanceof VarAccessNode) {
+			VarAccessNode n = (VarAccessNode) node;
+			if(n.slot < 0) emit(Bytecode.LOAD_NAME, constant(n));
+			else emit(Bytecode.LOAD_SLOT, n.depth, n.slot, constant(n.name));
+		} else if(node instanceof ThisNode) {
+			emit(Bytecode.THIS);
+		} else if(node instanceof VarAssignNode) {
+			VarAssignNode n = (VarAssignNode) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.expression);
+			if(n.slot < 0) emit(Bytecode.ASSIGN_NAME, constant(n.name.value));
+			else emit(Bytecode.ASSIGN_SLOT, n.depth, n.slot);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof VarModifyNode) {
+			VarModifyNode n = (VarModifyNode) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.node);
+			if(n.slot < 0) emit(Bytecode.MODIFY_NAME, constant(n.name.value));
+			else emit(Bytecode.ASSIGN_SLOT, n.depth, n.slot);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof VarAddNode) {
+			VarAddNode n = (VarAddNode) node;
+			compileCompound(Bytecode.ADD, n.name, n.node, n.depth, n.slot);
+		} else if(node instanceof VarSubNode) {
+			VarSubNode n = (VarSubNode) node;
+			compileCompound(Bytecode.SUB, n.name, n.node, n.depth, n.slot);
+		} else if(node instanceof VarMultNode) {
+			VarMultNode n = (VarMultNode) node;
+			compileCompound(Bytecode.MULT, n.name, n.node, n.depth, n.slot);
+		} else if(node instanceof VarDivNode) {
+			VarDivNode n = (VarDivNode) node;
+			compileCompound(Bytecode.DIV, n.name, n.node, n.depth, n.slot);
+		} else if(node instanceof BinaryOperation) {
+			BinaryOperation n = (BinaryOperation) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.leftNode);
+			int skip = n.isLogical()?emit(Bytecode.SHORT_CIRCUIT, n.operator, 0):-1;
+			compileNode(n.rightNode);
+			emit(Bytecode.BINARY, n.operator);
+			if(skip >= 0) patch(skip+2, length);
+			emit(Bytecode.LEAVE_KEEP);
+		} else if(node instanceof UnaryOperation) {
+			UnaryOperation n = (UnaryOperation) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.node);
+			emit(Bytecode.UNARY, n.operationToken.matches(TokenType.MINUS)?Bytecode.NEGATE:n.operationToken.matches("not", TokenType.KEYWORD)?Bytecode.NOT:Bytecode.IDENTITY);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof IfNode) {
+			compileIf((IfNode) node);
+		} else if(node instanceof WhileNode) {
+			WhileNode n = (WhileNode) node;
+			emit(Bytecode.ENTER);
+			emit(Bytecode.WHILE_PREP, scope(n.scoped, "<while>"), n.collects()?0:1);
+			int handler = emit(Bytecode.HANDLER, 0, 0);
+			int loop = length;
+			compileNode(n.condition);
+			int test = emit(Bytecode.WHILE_TEST, 0);
+			compileNode(n.body);
+			emit(Bytecode.LOOP_ADD);
+			int step = emit(Bytecode.WHILE_STEP, loop);
+			patch(test+1, length);
+			patch(handler+1, length);
+			patch(handler+2, step);
+			emit(Bytecode.LOOP_END, 2);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.start);
+			compileNode(n.end);
+			if(n.step != null) compileNode(n.step);
+			emit(Bytecode.FOR_PREP, scope(n.scoped, "<for>"), n.collects()?0:1, n.step != null?1:0, n.unboxed?1:0);
+			int handler = emit(Bytecode.HANDLER, 0, 0);
+			int loop = emit(Bytecode.FOR_TEST, 0, n.slot, constant(n.varName.value));
+			compileNode(n.body);
+			emit(Bytecode.LOOP_ADD);
+			int step = emit(Bytecode.FOR_STEP, loop, n.unboxed?1:0);
+			patch(loop+1, length);
+			patch(handler+1, length);
+			patch(handler+2, step);
+			emit(Bytecode.LOOP_END, 5);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof ForInNode) {
+			ForInNode n = (ForInNode) node;
+			emit(Bytecode.ENTER);
+			compileNode(n.array);
+			emit(Bytecode.FORIN_PREP, scope(n.scoped, "<forin>"), n.collects()?0:1);
+			int handler = emit(Bytecode.HANDLER, 0, 0);
+			int loop = emit(Bytecode.FORIN_TEST, 0, n.slot, constant(n.varName.value));
+			compileNode(n.body);
+			emit(Bytecode.LOOP_ADD);
+			int step = emit(Bytecode.FORIN_STEP, loop);
+			patch(loop+1, length);
+			patch(handler+1, length);
+			patch(handler+2, step);
+			emit(Bytecode.LOOP_END, 4);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof FunctionDefNode) {
+			FunctionDefNode n = (FunctionDefNode) node;
+			String[] args_name = new String[n.args.length];
+			for(int i = 0; i < args_name.length; i++) args_name[i] = (String) n.args[i].value;
+			emit(Bytecode.FUNCTION, constant(new Object[] {n, args_name, compile(n.body)}));
+		} else if(node instanceof CallNode) {
+			compileCall((CallNode) node, false);
+		} else if(node instanceof PointAccessNode) {
+			// each member runs in the context of the value before it, the calls they make stay in the vm
+			Object[] nodes = ((PointAccessNode) node).nodes;
+			emit(Bytecode.ENTER);
+			emit(Bytecode.PUSH_CONTEXT, -1);
+			for(int i = 0; i < nodes.length; i++) {
+				if(i > 0) emit(Bytecode.POP);
+				if(i > 0 && nodes[i] instanceof CallNode) compileCall((CallNode) nodes[i], true);
+				else compileNode(nodes[i]);
+				emit(Bytecode.MEMBER);
+			}
+			emit(Bytecode.POP_CONTEXT);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof ListNode) {
+			emit(Bytecode.ENTER);
+			emit(Bytecode.LIST);
+			for(Object o:((ListNode) node).elementNodes) {
+				compileNode(o);
+				emit(Bytecode.LIST_ADD);
+			}
+			emit(Bytecode.POP_CONTEXT);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof StatementsNode) {
+			emit(Bytecode.ENTER);
+			for(Object o:((StatementsNode) node).elementNodes) {
+				compileNode(o);
+				emit(Bytecode.POP);
+			}
+			emit(((StatementsNode) node).discarded?Bytecode.NULL:Bytecode.SELF);
+			emit(Bytecode.LEAVE_SET);
+		} else if(node instanceof InvariantNode) {
+			int memo = constant(node);
+			int check = emit(Bytecode.INVARIANT, memo, 0);
+			compileNode(((InvariantNode) node).node);
+			emit(Bytecode.MEMO, memo);
+			patch(check+2, length);
+		} else if(node instanceof ReturnNode) {
+			emit(Bytecode.ENTER);
+			compileNode(((ReturnNode) node).toReturn);
+			emit(Bytecode.RETURN);
+		} else if(node instanceof ContinueNode) {
+			emit(Bytecode.CONTINUE);
+		} else if(node instanceof BreakNode) {
+			emit(Bytecode.BREAK);
+		} else emit(Bytecode.EVAL, constant(node));
+	}
+
+	// a member call of a string or a list runs its method without binding it
+	private void compileCall(CallNode n, boolean member) {
+		emit(Bytecode.ENTER);
+		if(member && n.nodeToCall instanceof VarAccessNode) emit(Bytecode.METHOD, constant(n.nodeToCall));
+		else compileNode(n.nodeToCall);
+		int folded = n.folding != null?emit(Bytecode.FOLDED, constant(n), 0):-1;
+		int callable = emit(Bytecode.CALLABLE, 0);
+		for(Object a:n.args) compileNode(a);
+		emit(n.tail?Bytecode.TAIL_CALL:Bytecode.CALL, n.args.length);
+		emit(Bytecode.LEAVE_SET);
+		patch(callable+1, length);
+		if(folded >= 0) patch(folded+2, length);
+	}
+
+	private void compileCompound(int operator, Token name, Object node, int depth, int slot) {
+		emit(Bytecode.ENTER);
+		compileNode(node);
+		if(slot < 0) emit(Bytecode.COMPOUND_NAME, operator, constant(name.value));
+		else emit(Bytecode.COMPOUND_SLOT, operator, depth, slot);
+		emit(slot < 0 && operator == Bytecode.ADD?Bytecode.LEAVE_KEEP:Bytecode.LEAVE_SET);
+	}
+
+	private void compileIf(IfNode node) {
+		ArrayList<Integer> exits = new ArrayList<Integer>();
+		emit(Bytecode.ENTER);
+		for(CaseDataNode cdn:node.cases) {
+			compileNode(cdn.condition);
+			int test = emit(Bytecode.JUMP_IF_FALSE, 0);
+			emit(Bytecode.PUSH_CONTEXT, scope(cdn.scoped, "<if>"));
+			compileBranch(cdn);
+			exits.add(emit(Bytecode.JUMP, 0));
+			patch(test+1, length);
+		}
+		if(node.else_case != null) {
+			emit(Bytecode.PUSH_CONTEXT, scope(node.else_case.scoped, "<if>"));
+			compileBranch(node.else_case);
+		} else emit(Bytecode.NULL);
+		for(int exit:exits) patch(exit+1, length);
+		emit(Bytecode.LEAVE_SET);
+	}
+
+	private void compileBranch(CaseDataNode cdn) {
+		compileNode(cdn.statements);
+		emit(Bytecode.POP_CONTEXT);
+		if(cdn.shouldReturnNull) {
+			emit(Bytecode.POP);
+			emit(Bytecode.NULL);
+		}
+	}
+
+	private int scope(boolean scoped, String name) { return scoped?constant(name):-1; }
+
+	private int constant(Object value) {
+		constants.add(value);
+		return constants.size()-1;
+	}
+
+	private void patch(int index, int value) { code[index] = value; }
+
+	private int emit(int... ops) {
+		if(length+ops.length > code.length) {
+			int[] grown = new int[Math.max(code.length*2, length+ops.length)];
+			System.arraycopy(code, 0, grown, 0, length);
+			code = grown;
+		}
+		int start = length;
+		for(int op:ops) code[length++] = op;
+		return start;
+	}
+
+}
\ No newline at end of file
@@ -11,6 +11,7 @@ import ch.holo.jipl.Interpreter.List;
 import ch.holo.jipl.Interpreter.Number;
 import ch.holo.jipl.Interpreter.ObjectValue;
 import ch.holo.jipl.Interpreter.StringValue;
+import ch.holo.jipl.Parser.BinaryOperation;
 
 public class Context implements Serializable {
 	
@@ -18,9 +19,11 @@ public class Context implements Serializable {
 	public String displayName, file;
 	public Context parent = null;
 
-	public HashMap<String, Object> symbols;
-	public HashMap<String, Consumer<Object>> setterTracks = new HashMap<>();
-	public HashMap<String, Callable<Object>> getterTracks = new HashMap<>();
+	// SymbolTable.EMPTY, which can not be written to, until a first name is set
+	public SymbolTable symbols;
+	
+	// changes whenever a name is added to or removed from this context, or it is moved under another one, read by the caches of other threads
+	protected transient volatile int version;
 	
 	public String toString() {
 		return displayName;
@@ -33,41 +36,53 @@ public class Context implements Serializable {
 	public Context(String displayName, Context parent) {
 		this.displayName = displayName;
 		this.parent = parent;
-		this.symbols = new HashMap<>();
-		this.setterTracks = new HashMap<>();
-		this.getterTracks = new HashMap<>();
+		this.symbols = SymbolTable.EMPTY;
 		this.file = parent!=null?parent.file:null;
 	}
 	
+	private SymbolTable symbols() {
+		if(symbols == SymbolTable.EMPTY) symbols = new SymbolTable();
+		return symbols;
+	}
+	
 	public void newParent(Context parent) {
 		if(parent == this) return;
 		if(parent.parent == this) return;
 		if(this.parent != null)
-			this.parent = parent;
+			setParent(parent);
+	}
+	
+	public void setParent(Context parent) {
+		if(parent == this.parent) return;
+		this.parent = parent;
+		if(getClass() == Context.class) version++;
 	}
 	
 	public void set(String name, Object value) {
-		symbols.put(name, value);
-		if(setterTracks.containsKey(name))
-			try {
-				setterTracks.get(name).accept(Context.getAppropriateObject(value));
-			} catch (Exception e) { e.printStackTrace(); }
+		if(symbols().put(name, value) == null) version++;
+		if(symbols.tracked()) {
+			Consumer<Object> setter = symbols.setter(symbols.find(name));
+			if(setter != null)
+				try {
+					setter.accept(Context.getAppropriateObject(value));
+				} catch (Exception e) { e.printStackTrace(); }
+		}
 	}
 	
 	public void set(String name, Object value, Consumer<Object> setterTrack, Callable<Object> getterTrack) {
-		symbols.put(name, value);
-		setterTracks.put(name, setterTrack);
-		getterTracks.put(name, getterTrack);
+		if(symbols().put(name, value) == null) version++;
+		symbols.track(name, setterTrack, getterTrack);
 	}
 	
 	public void setAppropriateObject(String name, Object o) {
-		symbols.put(name, appropriateObjectConverter(o));
+		if(symbols().put(name, appropriateObjectConverter(o)) == null) version++;
 	}
 	
 	@SuppressWarnings("unchecked")
 	public static Object appropriateObjectConverter(Object o) {
-		if(o instanceof Integer || o instanceof Float || o instanceof Double) o = new Number(o);
-		else if(o instanceof Boolean) o = new Number((boolean) o?Number.TRUE:Number.FALSE);
+		if(o instanceof Integer) o = Number.of((int) o);
+		else if(o instanceof Float || o instanceof Double) o = Number.of(((java.lang.Number) o).doubleValue());
+		else if(o instanceof Boolean) o = Number.of((boolean) o);
 		else if(o instanceof String) o = new StringValue(o);
 		else if(o instanceof ArrayList) o = new List((ArrayList<Object>) o);
 		else if(o == null) o = Number.NULL;
@@ -76,10 +91,12 @@ public class Context implements Serializable {
 	
 	public Object get(String name) {
 		//System.out.println(name +":" +displayName);
-		if(symbols.containsKey(name)) {
-			if(getterTracks.containsKey(name))
-				try { symbols.put(name, Context.appropriateObjectConverter(getterTracks.get(name).call())); } catch (Exception e) { e.printStackTrace(); }
-			return symbols.get(name);
+		int i = symbols.find(name);
+		if(i >= 0) {
+			Callable<Object> getter = symbols.getter(i);
+			if(getter != null)
+				try { symbols.value(i, Context.appropriateObjectConverter(getter.call())); } catch (Exception e) { e.printStackTrace(); }
+			return symbols.value(i);
 		} else if(parent != null && parent != this && parent.parent != this)
 			return parent.get(name);
 		
@@ -123,17 +140,42 @@ public class Context implements Serializable {
 		return array;
 	}
 
-	public HashMap<String, Object> getSymbols() { return symbols; }
+	// a live view, written names are seen by the context, as with the HashMap it used to be
+	public SymbolTable getSymbols() {
+		version++;
+		return symbols();
+	}
+	
+	/** @deprecated the tracks now live in the {@link SymbolTable}, this is a copy of the setters, set them with {@link #set(String, Object, Consumer, Callable)} */
+	@Deprecated
+	public HashMap<String, Consumer<Object>> getSetterTracks() {
+		HashMap<String, Consumer<Object>> tracks = new HashMap<>();
+		if(symbols.tracked()) for(String name:symbols.keySet()) {
+			Consumer<Object> setter = symbols.setter(symbols.find(name));
+			if(setter != null) tracks.put(name, setter);
+		}
+		return tracks;
+	}
+	
+	/** @deprecated the tracks now live in the {@link SymbolTable}, this is a copy of the getters, set them with {@link #set(String, Object, Consumer, Callable)} */
+	@Deprecated
+	public HashMap<String, Callable<Object>> getGetterTracks() {
+		HashMap<String, Callable<Object>> tracks = new HashMap<>();
+		if(symbols.tracked()) for(String name:symbols.keySet()) {
+			Callable<Object> getter = symbols.getter(symbols.find(name));
+			if(getter != null) tracks.put(name, getter);
+		}
+		return tracks;
+	}
 	
 	public void putAll(Context... cons) {
+		version++;
 		for(Context con:cons) {
-			symbols.putAll(con.symbols);
-			getterTracks.putAll(con.getterTracks);
-			setterTracks.putAll(con.setterTracks);
+			if(!con.symbols.isEmpty()) symbols().putAll(con.symbols);
 		}
 	}
 	
-	public void remove(String name) { symbols.remove(name); }
+	public void remove(String name) { if(symbols.remove(name) != null) version++; }
 	
 	public float number(String name) { return ((Number)get(name)).value; }
 	public String string(String name) { return ((StringValue)get(name)).value; }
@@ -142,4 +184,24 @@ public class Context implements Serializable {
 	public ObjectValue object(String name) { return (ObjectValue)get(name); }
 
 	public Object strictget(String name) { return symbols.get(name); }
+	public Object operator(int operator) { return symbols.isEmpty()?null:symbols.get(BinaryOperation.OVERLOADS[operator]); }
+	
+	/**
+	 * The context {@link #get(String)} would read name from, as long as only plain contexts are met on the way.
+	 * Null when the name is not defined or when a context resolving names its own way is met.
+	 */
+	public Context lookup(String name) {
+		Context con = this;
+		while(con.getClass() == Context.class) {
+			if(con.symbols.containsKey(name)) return con;
+			Context parent = con.parent;
+			if(parent == null || parent == con || parent.parent == con) return null;
+			con = parent;
+		}
+		return null;
+	}
+	
+	public Object shape() { return null; }
+	public Object resolve(String name) { return null; }
+	public Object get(String name, Object resolved) { return get(name); }
 }
\ No newline at end of file
@@ -60,7 +60,7 @@ public abstract class Error {
 			String str = name + " : " + text + (seq!=null?" at " + seq.toString():"");
 			for(int i = 0; i < trace.size(); i++) {
 				Token t = trace.get(i);
-				str += "     "+t.value +" at "+t.seq+"";
+				str += "     "+t.value +" at "+t.getSeq()+"";
 			}
 			System.err.println(str);
 			return str;
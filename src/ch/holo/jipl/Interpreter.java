@@ -3,6 +3,10 @@ package ch.holo.jipl;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 import ch.holo.jipl.Error.IllegalArgumentError;
 import ch.holo.jipl.Error.RuntimeError;
@@ -17,7 +21,9 @@ import ch.holo.jipl.Parser.FunctionDefNode;
 import ch.holo.jipl.Parser.IfNode;
 import ch.holo.jipl.Parser.IncludeNode;
 import ch.holo.jipl.Parser.InstantiateNode;
+import ch.holo.jipl.Parser.InvariantNode;
 import ch.holo.jipl.Parser.ListNode;
+import ch.holo.jipl.Parser.Node;
 import ch.holo.jipl.Parser.NumberNode;
 import ch.holo.jipl.Parser.ObjectDefNode;
 import ch.holo.jipl.Parser.PointAccessNode;
@@ -42,9 +48,11 @@ public class Interpreter {
 		private static final long serialVersionUID = 1L;
 		
 		protected Context context;
-		protected Sequence seq;
+		// the token the value was written at, its Sequence is only built for an error
+		protected Token origin;
+		protected boolean constant;
 		
-		protected Error.RuntimeError illegal_operation(Object obj) { return new RuntimeError("Illegal operation with " + obj, seq); }
+		protected Error.RuntimeError illegal_operation(Object obj) { return new RuntimeError("Illegal operation with " + obj, getSeq()); }
 		
 		protected Object execute(Value... args) { System.err.println("No execution defined for " + this); return null; }
 		public Value copy() { return this; }
@@ -52,6 +60,8 @@ public class Interpreter {
 		public Context getContext() { return context; }
 		
 		public Value setContext(Context context) { // TODO: review this
+			if(constant)
+				return copy().setContext(context);
 			if(context == this.context)
 				return this;
 			if(this.context != null)
@@ -61,6 +71,8 @@ public class Interpreter {
 		}
 		
 		public Context generateContext(Context context) {
+			if(constant)
+				return copy().generateContext(context);
 			if(context == this.context)
 				return this.context;
 			if(this.context != null) {
@@ -72,25 +84,30 @@ public class Interpreter {
 			return this.context;
 		}
 		
+		protected BaseFunction operator(int operator) {
+			if(context == null) return null;
+			Object function = context.operator(operator);
+			return function instanceof BaseFunction?(BaseFunction) function:null;
+		}
+		
 		protected Object add(Object obj) {
-			if(context != null && context.symbols.containsKey("add_"))
-				return context.function("add_").execute((Value) obj);
+			BaseFunction function = operator(BinaryOperation.ADD);
+			if(function != null) return function.execute((Value) obj);
 			return new StringValue(this+""+obj);
 		}
 		protected Object sub(Object obj) {
-			if(context != null && context.symbols.containsKey("sub_"))
-				return context.function("sub_").execute((Value) obj);
+			BaseFunction function = operator(BinaryOperation.SUB);
+			if(function != null) return function.execute((Value) obj);
 			return illegal_operation(obj);
 		}
 		protected Object mult(Object obj) {
-			if(context != null && context.symbols.containsKey("mult_")) {
-				return context.function("mult_").execute((Value) obj);
-			}
+			BaseFunction function = operator(BinaryOperation.MULT);
+			if(function != null) return function.execute((Value) obj);
 			return illegal_operation(obj);
 		}
 		protected Object div(Object obj) {
-			if(context != null && context.symbols.containsKey("div_"))
-				return context.function("div_").execute((Value) obj);
+			BaseFunction function = operator(BinaryOperation.DIV);
+			if(function != null) return function.execute((Value) obj);
 			return illegal_operation(obj);
 		}
 		
@@ -107,90 +124,192 @@ public class Interpreter {
 		
 		public Object _not() { return !isTrue(); }
 		
-		public Sequence getSeq() { return seq; }
-		public Value setSeq(Sequence seq) { this.seq = seq; return this; }
+		public Sequence getSeq() { return origin==null?null:origin.getSeq(); }
+		/** @deprecated a value keeps the token it was written at, this moves that token to the sequence, see {@link #setOrigin(Token)} */
+		@Deprecated
+		public Value setSeq(Sequence seq) {
+			return setOrigin(new Token(origin==null?null:origin.type, seq, origin==null?null:origin.value));
+		}
+		public Token getOrigin() { return origin; }
+		public Value setOrigin(Token origin) {
+			if(constant) return copy().setOrigin(origin);
+			this.origin = origin;
+			return this;
+		}
+		
+		public boolean isConstant() { return constant; }
+		public Value makeConstant() { constant = true; return this; }
 	}
 	
 	public static class Number extends Value implements Serializable {
 		private static final long serialVersionUID = 1L;
 		
-		public static final Number NULL = new Number(0);
-		public static final Number FALSE = new Number(0);
-		public static final Number TRUE = new Number(1);
+		public static final Number NULL = (Number) new Number(0).makeConstant();
+		public static final Number FALSE = (Number) new Number(0).makeConstant();
+		public static final Number TRUE = (Number) new Number(1).makeConstant();
+		
+		private static final int CACHE_LOW = -128, CACHE_HIGH = 1023;
+		private static final Number[] CACHE = new Number[CACHE_HIGH-CACHE_LOW+1];
+		static {
+			for(int i = 0; i < CACHE.length; i++)
+				CACHE[i] = (Number) new Number(i+CACHE_LOW).makeConstant();
+		}
+		
+		public static Number of(long value) {
+			if(value >= CACHE_LOW && value <= CACHE_HIGH) return CACHE[(int) value-CACHE_LOW];
+			return new Number(value);
+		}
+		
+		public static Number of(double value) {
+			if(value >= CACHE_LOW && value <= CACHE_HIGH && value == (int) value && !(value == 0 && 1/value < 0)) return CACHE[(int) value-CACHE_LOW];
+			return new Number(value);
+		}
+		
+		public static Number of(boolean value) { return value?TRUE:FALSE; }
 		
 		public float value;
+		protected long integer;
+		protected boolean integral;
+		
+		public Number(int value) { this((long) value); }
+		public Number(long value) {
+			this.value = value;
+			this.integer = value;
+			this.integral = true;
+		}
+		public Number(float value) { set(value); }
+		public Number(double value) { set(value); }
+		
+		public Number(Object value) { set(parse(value+"")); }
 		
-		public Number(int value) { this.value = value; }
-		public Number(float value) { this.value = value; }
-		public Number(double value) { this.value = (float)value; }
+		// a float literal goes straight to parseFloat, throwing on each of them was most of the cost of parsing a table of decimals
+		private static double parse(String str) {
+			if(str.indexOf('.') >= 0) return Float.parseFloat(str);
+			try { return Long.parseLong(str); }
+			catch(NumberFormatException e) { return Float.parseFloat(str); }
+		}
+		
+		private void set(double value) {
+			this.value = (float) value;
+			this.integral = value == (long) value && Math.abs(value) < 9.2e18;
+			this.integer = integral?(long) value:0;
+		}
 		
-		public Number(Object value) { this.value = Float.parseFloat(value+""); }
+		protected Number plus(Number n) {
+			if(integral && n.integral) {
+				long r = integer+n.integer;
+				if(((integer^r)&(n.integer^r)) >= 0) return of(r);
+			}
+			return of(value+n.value);
+		}
+		
+		// steps a loop counter in place, only used on counters the Resolver proved never escape the loop
+		protected Number advance(Number n) {
+			if(constant || !integral || !n.integral) return plus(n);
+			long r = integer+n.integer;
+			if(((integer^r)&(n.integer^r)) < 0) return plus(n);
+			value = r;
+			integer = r;
+			return this;
+		}
+		
+		protected Number minus(Number n) {
+			if(integral && n.integral) {
+				long r = integer-n.integer;
+				if(((integer^n.integer)&(integer^r)) >= 0) return of(r);
+			}
+			return of(value-n.value);
+		}
+		
+		protected Number times(Number n) {
+			if(integral && n.integral) {
+				long r = integer*n.integer;
+				if(Math.multiplyHigh(integer, n.integer) == r >> 63) return of(r);
+			}
+			return of(value*n.value);
+		}
+		
+		protected Number divided(Number n) {
+			if(integral && n.integral) {
+				if(integer%n.integer == 0 && (n.integer != -1 || integer != Long.MIN_VALUE)) return of(integer/n.integer);
+				return of((double) integer/n.integer);
+			}
+			return of(value/n.value);
+		}
+		
+		protected boolean less(Number n) { return integral && n.integral?integer < n.integer:value < n.value; }
+		protected boolean lessOrEqual(Number n) { return integral && n.integral?integer <= n.integer:value <= n.value; }
 		
 		protected Object add(Object obj) {
-			if(obj instanceof Number) return new Number(value+((Number)obj).value);
+			if(obj instanceof Number) return plus((Number) obj);
 			else if(obj instanceof StringValue) return new StringValue(toString()+((StringValue)obj).value);
 			else return illegal_operation(obj);
 		}
 		
 		protected Object sub(Object obj) {
-			if(obj instanceof Number) return new Number(value-((Number)obj).value); else return illegal_operation(obj);
+			if(obj instanceof Number) return minus((Number) obj); else return illegal_operation(obj);
 		}
 		
 		protected Object mult(Object obj) {
-			if(obj instanceof Number) return new Number(value*((Number)obj).value); else return illegal_operation(obj);
+			if(obj instanceof Number) return times((Number) obj); else return illegal_operation(obj);
 		}
 		
 		protected Object div(Object obj) {
 			if(obj instanceof Number) {
 				Number n = (Number)obj;
-				if(n.value == 0) return new Error.RuntimeError("Division by zero", n.seq);
-				return new Number(value/n.value);
+				if(n.value == 0) return new Error.RuntimeError("Division by zero", n.getSeq());
+				return divided(n);
 			} else return illegal_operation(obj);
 		}
 		
 		public Object _equals(Object obj) {
-			if(obj instanceof Number) return new Number(isEqualTo(((Number)obj).value)?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(isEqualTo((Number) obj)); else return illegal_operation(obj);
 		}
 		
 		public Object _not_equals(Object obj) {
-			if(obj instanceof Number) return new Number(!isEqualTo(((Number)obj).value)?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(!isEqualTo((Number) obj)); else return illegal_operation(obj);
 		}
 		
 		public Object _less(Object obj) {
-			if(obj instanceof Number) return new Number(value<((Number)obj).value?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(less((Number) obj)); else return illegal_operation(obj);
 		}
 		
 		public Object _greater(Object obj) {
-			if(obj instanceof Number) return new Number(value>((Number)obj).value?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(((Number) obj).less(this)); else return illegal_operation(obj);
 		}
 		
 		public Object _less_equals(Object obj) {
-			if(obj instanceof Number) return new Number(value<=((Number)obj).value?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(lessOrEqual((Number) obj)); else return illegal_operation(obj);
 		}
 		
 		public Object _greater_equals(Object obj) {
-			if(obj instanceof Number) return new Number(value>=((Number)obj).value?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(((Number) obj).lessOrEqual(this)); else return illegal_operation(obj);
 		}
 		
 		public Object _and(Object obj) {
-			if(obj instanceof Number) return new Number((isTrue()&&((Number)obj).isTrue())?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(isTrue()&&((Number)obj).isTrue()); else return illegal_operation(obj);
 		}
 		
 		public Object _or(Object obj) {
-			if(obj instanceof Number) return new Number((isTrue()||((Number)obj).isTrue())?1:0); else return illegal_operation(obj);
+			if(obj instanceof Number) return of(isTrue()||((Number)obj).isTrue()); else return illegal_operation(obj);
 		}
 		
-		public boolean isTrue() { return !isEqualTo(0); }
-		public Object _not() { return new Number(value==0?1:0); }
+		public boolean isTrue() { return integral?integer != 0:!isEqualTo(0); }
+		public Object _not() { return of(value==0); }
 		
 		public float getValue() { return value; }
-		public void setValue(float value) { this.value = value; }
+		public Number setValue(float value) {
+			if(constant) return (Number) new Number(value).setContext(context).setOrigin(origin);
+			set(value);
+			return this;
+		}
 		
 		public boolean isEqualTo(float x) { return Math.abs(value-x) < 0.00025f; }
+		public boolean isEqualTo(Number n) { return integral && n.integral?integer == n.integer:isEqualTo(n.value); }
 		
-		public String toString() { return (value%1==0?(int)value+"":value+""); }
+		public String toString() { return integral?integer+"":(value%1==0?(int)value+"":value+""); }
 		
-		public Value copy() { return new Number(value).setContext(this.context); }
+		public Value copy() { return (integral?new Number(integer):new Number(value)).setContext(this.context); }
 	}
 	
 	public static class StringValue extends Value implements Serializable {
@@ -205,23 +324,24 @@ public class Interpreter {
 		
 		public boolean isTrue() { return value.length() > 0; }
 		
-		public Context generateContext(Context context) {
-			if(this.context != null) {
-				this.context.newParent(context);
-				return this.context;
-			}
-			Context selfContext = new Context("<string>", context);
-			selfContext.set("length", new Number(value.length()));
-			selfContext.set("equals", new BuildInFunction("equals", "string") {
+		protected static final HashMap<String, BuildInMethod> METHODS = new HashMap<String, BuildInMethod>();
+		static {
+			METHODS.put("length", new BuildInMethod(true, "length") {
 				private static final long serialVersionUID = 1L;
-
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					return value.equalsIgnoreCase(args[0].toString())?Number.TRUE:Number.FALSE;
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					return Number.of(((StringValue) self).value.length());
+				}
+			});
+			METHODS.put("equals", new BuildInMethod("equals", "string") {
+				private static final long serialVersionUID = 1L;
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					return ((StringValue) self).value.equalsIgnoreCase(args[0].toString())?Number.TRUE:Number.FALSE;
 				}
 			});
-			selfContext.set("split", new BuildInFunction("split", "text") {
+			METHODS.put("split", new BuildInMethod("split", "text") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					String value = ((StringValue) self).value;
 					String s = args[0].toString();
 					String[] strs = s.equals(" ")?value.split("\\s+"):value.split(s);
 					StringValue[] vls = new StringValue[strs.length];
@@ -231,30 +351,33 @@ public class Interpreter {
 					return res.success(new List(vls));
 				}
 			});
-			selfContext.set("charAt", new BuildInFunction("charAt", "index") {
+			METHODS.put("charAt", new BuildInMethod("charAt", "index") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					String value = ((StringValue) self).value;
 					if(args[0] instanceof Number) {
 						int index = (int) ((Number)args[0]).value;
 						if(index < 0 || index >= value.length())
 							return res.failure(new Error.RuntimeError("Index out of bounds " + index + ".", null));
 						return res.success(new StringValue(""+value.charAt(index)));
 					}
-					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", null));
 				}
 			});
-			selfContext.set("chars", new BuildInFunction("chars") {
+			METHODS.put("chars", new BuildInMethod("chars") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					String value = ((StringValue) self).value;
 					StringValue[] chars = new StringValue[value.length()];
 					for(int i = 0; i < chars.length; i++)
 						chars[i] = new StringValue(value.charAt(i)+"");
 					return res.success(new List(chars));
 				}
 			});
-			selfContext.set("substring", new BuildInFunction("sub", "start", "end") {
+			METHODS.put("substring", new BuildInMethod("sub", "start", "end") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					String value = ((StringValue) self).value;
 					if(args[0] instanceof Number && args[1] instanceof Number) {
 						int start = (int) ((Number)args[0]).value, end = (int) ((Number)args[1]).value;
 						if(start < 0 || start > value.length())
@@ -264,13 +387,24 @@ public class Interpreter {
 						return res.success(new StringValue(value.substring(start, end)));
 					}
 					
-					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+"::"+args[1]+" is not allowed to the function '"+name+"'", seq));
+					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+"::"+args[1]+" is not allowed to the function '"+name+"'", null));
 				}
 			});
-			this.context = selfContext;
-			return selfContext;
 		}
 		
+		public Context generateContext(Context context) {
+			if(constant)
+				return copy().generateContext(context);
+			if(this.context != null) {
+				this.context.newParent(context);
+				return this.context;
+			}
+			this.context = new MemberContext("<string>", context, this, METHODS);
+			return this.context;
+		}
+		
+		public Value copy() { return new StringValue(value).setContext(this.context); }
+		
 		public String toString() { return value+""; }
 	}
 	
@@ -297,7 +431,7 @@ public class Interpreter {
 		protected Object check_args(String[] args_name, Value[] args) {
 			RTResult res = new RTResult();
 			if(args.length != args_name.length)
-				return res.failure(new Error.RuntimeError("Incorrect number of argument have been passed in " + name, seq));
+				return res.failure(new Error.RuntimeError("Incorrect number of argument have been passed in " + name, getSeq()));
 			return res.success(null);
 		}
 		
@@ -320,7 +454,7 @@ public class Interpreter {
 
 		public Object checkArgumentTypes(RTResult res, Value[] args, Class<?>... cl) {
 			for(int i = 0; i < args.length; i++)
-				if(!cl[i].isInstance(args[i])) return res.failure(new IllegalArgumentError(name, args[i], args[i].seq));
+				if(!cl[i].isInstance(args[i])) return res.failure(new IllegalArgumentError(name, args[i], args[i].getSeq()));
 			return res.success(Number.NULL);
 		}
 		
@@ -356,11 +490,246 @@ public class Interpreter {
 		
 	}
 	
+	/**
+	 * A {@link BuildInFunction} that only reads its arguments by position, so it is called without building a {@link Context}.
+	 */
+	public static abstract class NativeFunction extends BuildInFunction implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		// no side effect and the same result for the same arguments, so calls on constants can be folded
+		protected boolean pure;
+		
+		public NativeFunction(String name, String... args_name) {
+			super(name, args_name);
+		}
+		
+		public NativeFunction pure() {
+			pure = true;
+			return this;
+		}
+		
+		public Object execute(Value... args) {
+			RTResult res = new RTResult();
+			if(args.length != args_name.length)
+				return res.failure(new Error.RuntimeError("Incorrect number of argument have been passed in " + name, getSeq()));
+			Object ret = executeNative(res, args);
+			return ret instanceof RTResult || ret instanceof Error?ret:res.success(ret);
+		}
+		
+		protected Object executeFunction(Context context, RTResult res, Value... args) { return executeNative(res, args); }
+		
+		protected abstract Object executeNative(RTResult res, Value... args);
+	}
+	
+	public static abstract class BuildInMethod implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		public String name;
+		public String[] args_name;
+		protected boolean property;
+		
+		public BuildInMethod(String name, String... args_name) { this(false, name, args_name); }
+		public BuildInMethod(boolean property, String name, String... args_name) {
+			this.property = property;
+			this.name = name;
+			this.args_name = args_name;
+		}
+		
+		public Object bind(Value self) {
+			if(property) return executeMethod(self, null, null);
+			return new NativeFunction(name, args_name) {
+				private static final long serialVersionUID = 1L;
+				protected Object executeNative(RTResult res, Value... args) { return executeMethod(self, null, res, args); }
+			};
+		}
+		
+		// what calling the function bind returns gives, without building it
+		public Object call(Value self, Value... args) {
+			RTResult res = new RTResult();
+			if(args.length != args_name.length)
+				return res.failure(new Error.RuntimeError("Incorrect number of argument have been passed in " + name, null));
+			Object ret = executeMethod(self, null, res, args);
+			return ret instanceof RTResult || ret instanceof Error?ret:res.success(ret);
+		}
+		
+		protected abstract Object executeMethod(Value self, Context context, RTResult res, Value... args);
+	}
+	
+	public static class MemberContext extends Context {
+		private static final long serialVersionUID = 1L;
+		
+		protected Value self;
+		protected HashMap<String, BuildInMethod> methods;
+		
+		public MemberContext(String displayName, Context parent, Value self, HashMap<String, BuildInMethod> methods) {
+			super(displayName, parent);
+			this.self = self;
+			this.methods = methods;
+		}
+		
+		public Object get(String name) {
+			if(!symbols.containsKey(name) && methods.containsKey(name)) return methods.get(name).bind(self);
+			return super.get(name);
+		}
+		
+		public Context getSource(String name) { return methods.containsKey(name)?this:super.getSource(name); }
+		public Context getSource(String name, Context def) { return methods.containsKey(name)?this:super.getSource(name, def); }
+		public Object strictget(String name) { return symbols.containsKey(name) || !methods.containsKey(name)?super.strictget(name):methods.get(name).bind(self); }
+		
+		// the method a call by that name runs, null when it is a property or a symbol of the value hides it
+		public BuildInMethod method(String name) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) return null;
+			BuildInMethod method = methods.get(name);
+			return method == null || method.property?null:method;
+		}
+		
+		public Object shape() { return methods; }
+		public Object resolve(String name) { return methods.get(name); }
+		public Object get(String name, Object resolved) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) return super.get(name);
+			return ((BuildInMethod) resolved).bind(self);
+		}
+	}
+	
+	/**
+	 * Remembers the global context a name is defined in, so later reads go there directly until its {@link Context#version} changes.
+	 * The contexts made for each call are passed over as long as they hold no name, as they can not hide the global one,
+	 * so the reads of every call of a function hit the same entry.
+	 */
+	public static class GlobalCache {
+		
+		// replaced as a whole, so a thread never sees the global of one entry with the version of another
+		protected static final class Entry {
+			protected final Context global;
+			protected final int version;
+			protected Entry(Context global, int version) { this.global = global; this.version = version; }
+		}
+		
+		protected volatile Entry entry;
+		
+		public Object get(Context context, String name) {
+			Context owner = owner(context);
+			Entry e = entry;
+			if(e != null && owner == e.global && e.version == owner.version)
+				return owner.symbols.tracked()?owner.get(name):owner.symbols.get(name);
+			
+			// read before the lookup, a definition made meanwhile leaves the entry already stale
+			int version = owner.version;
+			if(owner.parent == null && owner.getClass() == Context.class && owner.symbols.containsKey(name)) entry = new Entry(owner, version);
+			return context.get(name);
+		}
+		
+		// the first context up from this one holding a name, or one that is not plain and may hold it elsewhere
+		private static Context owner(Context context) {
+			Context con = context;
+			while(con.getClass() == Context.class && con.symbols.isEmpty()) {
+				Context parent = con.parent;
+				if(parent == null || parent == con || parent.parent == con) return con;
+				con = parent;
+			}
+			return con;
+		}
+	}
+	
+	public static class InlineCache {
+		
+		public static final int LIMIT = 4;
+		
+		protected static class Entry {
+			protected final Object shape, resolved;
+			protected Entry(Object shape, Object resolved) { this.shape = shape; this.resolved = resolved; }
+		}
+		
+		protected static final Entry[] EMPTY = new Entry[0], MEGAMORPHIC = new Entry[0];
+		
+		// replaced by a longer copy and never written in place, so a thread sharing the node sees whole entries, at worst one added meanwhile is lost
+		protected volatile Entry[] entries = EMPTY;
+		
+		public Object get(Context context, String name) {
+			Object shape = context.shape();
+			Entry[] cached = entries;
+			if(shape == null || cached == MEGAMORPHIC) return context.get(name);
+			
+			for(Entry e:cached)
+				if(e.shape == shape) return context.get(name, e.resolved);
+			
+			Object resolved = context.resolve(name);
+			if(resolved == null) return context.get(name);
+			if(cached.length >= LIMIT) {
+				entries = MEGAMORPHIC;
+				return context.get(name);
+			}
+			Entry[] grown = Arrays.copyOf(cached, cached.length+1);
+			grown[cached.length] = new Entry(shape, resolved);
+			entries = grown;
+			return context.get(name, resolved);
+		}
+	}
+	
 	public static class Function extends BaseFunction implements Serializable {
 		private static final long serialVersionUID = 1L;
 		
 		protected Object body_node;
 		protected boolean shouldAutoReturn;
+		protected int frameSize = -1;
+		protected Frame frame;
+		protected Bytecode bytecode, deep;
+		protected JIT.Profile profile = new JIT.Profile();
+		
+		// nested calls a thread makes before the recursion carries on in the vm, or on a new stack when JIPL.segments is set
+		private static final int MAIN_CALLS = 256, SEGMENT_CALLS = 4096;
+		private static final long SEGMENT_STACK = 64L << 20;
+		static final ThreadLocal<CallStack> CALL_STACK = ThreadLocal.withInitial(() -> new CallStack());
+		
+		// the calls running on a thread, a call reuses the frame, interpreter and vm of the last one made at the same depth
+		static class CallStack {
+			// the depth up to which they are kept once the call returns
+			private static final int KEPT = 256;
+			
+			protected int left = MAIN_CALLS, depth;
+			protected Frame[] frames = new Frame[16];
+			protected Interpreter[] interpreters = new Interpreter[16];
+			protected VM[] vms = new VM[16];
+			
+			protected void enter() {
+				left--;
+				if(++depth == frames.length) {
+					frames = Arrays.copyOf(frames, depth*2);
+					interpreters = Arrays.copyOf(interpreters, depth*2);
+					vms = Arrays.copyOf(vms, depth*2);
+				}
+			}
+			
+			protected void leave() {
+				if(depth > KEPT) {
+					frames[depth] = null;
+					interpreters[depth] = null;
+					vms[depth] = null;
+				}
+				left++;
+				depth--;
+			}
+			
+			protected Frame frame(int size, Frame parent) {
+				Frame f = frames[depth];
+				if(f == null || f.captured || f.parent != parent || f.slots.length != size) return frames[depth] = new Frame(size, parent);
+				Arrays.fill(f.slots, null);
+				return f;
+			}
+			
+			protected Interpreter interpreter(Frame frame) {
+				Interpreter in = interpreters[depth];
+				if(in == null) in = interpreters[depth] = new Interpreter();
+				in.frame = frame;
+				return in;
+			}
+			
+			protected VM vm(Frame frame) {
+				VM vm = vms[depth];
+				if(vm == null) return vms[depth] = new VM(frame);
+				return vm.reuse(frame);
+			}
+		}
 		
 		public Function(String name, Object body_node, String[] args_name, boolean shouldAutoReturn) {
 			super(name);
@@ -369,25 +738,148 @@ public class Interpreter {
 			this.shouldAutoReturn = shouldAutoReturn;
 		}
 		
+		public Function setFrame(int frameSize, Frame frame) {
+			this.frameSize = frameSize;
+			this.frame = frame;
+			if(frame != null) frame.captured = true;
+			return this;
+		}
+		
+		public Function setBytecode(Bytecode bytecode) {
+			this.bytecode = bytecode;
+			return this;
+		}
+		
+		// the functions built from the same definition count their calls and share what the JIT compiles together
+		public Function setProfile(JIT.Profile profile) {
+			this.profile = profile;
+			return this;
+		}
+		
 		public Object execute(Value... args) {
+			CallStack stack = CALL_STACK.get();
+			if(JIPL.segments && stack.left <= 0) return executeOnNewStack(args);
+			stack.enter();
+			try {
+				Function function = this;
+				ArrayList<Token> trace = null;
+				while(true) {
+					Object ret = function.invoke(stack, args);
+					TailCall call = tailCall(ret);
+					if(call == null) return traced(ret, trace);
+					trace = trace(call, trace);
+					function = call.function;
+					args = call.args;
+				}
+			} finally { stack.leave(); }
+		}
+		
+		// the call a function returned to be made in its place, null when it returned anything else
+		static TailCall tailCall(Object ret) {
+			return ret instanceof RTResult && ((RTResult) ret).value instanceof TailCall?(TailCall) ((RTResult) ret).value:null;
+		}
+		
+		// keeps the call sites for error traces, a function calling itself only counts once
+		static ArrayList<Token> trace(TailCall call, ArrayList<Token> trace) {
+			if(call.token == null) return trace;
+			if(trace == null) trace = new ArrayList<Token>();
+			if(trace.isEmpty() || trace.get(trace.size()-1) != call.token) trace.add(call.token);
+			return trace;
+		}
+		
+		static Object traced(Object ret, ArrayList<Token> trace) {
+			if(trace != null && ret instanceof RTResult && ((RTResult) ret).error != null)
+				for(int i = trace.size()-1; i >= 0; i--) ((RTResult) ret).error.add(trace.get(i));
+			return ret;
+		}
+		
+		// deep recursion carries on in a new thread with its own stack while this one waits for the result,
+		// only when JIPL.segments is set since the script then runs off the thread that called it
+		private Object executeOnNewStack(Value... args) {
+			Object[] ret = new Object[1];
+			Throwable[] thrown = new Throwable[1];
+			Thread segment = new Thread(null, () -> {
+				CALL_STACK.get().left = SEGMENT_CALLS;
+				try { ret[0] = execute(args); }
+				catch(Throwable t) { thrown[0] = t; }
+			}, name, SEGMENT_STACK);
+			segment.start();
+			try { segment.join(); }
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return new RTResult().failure(new Error.Stop("Stop", getSeq()));
+			}
+			if(thrown[0] instanceof RuntimeException) throw (RuntimeException) thrown[0];
+			if(thrown[0] instanceof java.lang.Error) throw (java.lang.Error) thrown[0];
+			return ret[0];
+		}
+		
+		protected Object invoke(CallStack stack, Value... args) {
 			RTResult res = new RTResult();
-			Interpreter intepreter = new Interpreter();
 			Context new_context = generateNewContext();
+			Frame exec_frame = frame;
 			
-			res.register(checkThenPopulate(args_name, args, new_context));
-			if(res.shouldReturn()) return res;
-			Object value = res.register(intepreter.visit(body_node, new_context));
+			if(frameSize < 0) {
+				res.register(checkThenPopulate(args_name, args, new_context));
+				if(res.shouldReturn()) return res;
+			} else {
+				Object entered = enter(stack, res, new_context, args);
+				if(!(entered instanceof Frame)) return entered;
+				exec_frame = (Frame) entered;
+			}
+			
+			Bytecode code = frameSize<0?bytecode:code(stack);
+			return complete(res, code!=null?stack.vm(exec_frame).run(code, new_context):stack.interpreter(exec_frame).visit(body_node, new_context));
+		}
+		
+		/**
+		 * The bytecode the body runs as, null to run it on the interpreter. Once the calls nest too deep, the body is compiled
+		 * so that the recursion goes on in the {@link VM}, which makes the calls it leads to without growing the Java stack.
+		 */
+		protected Bytecode code(CallStack stack) {
+			if(bytecode != null || !deep(stack)) return bytecode;
+			if(deep == null) deep = Compiler.compile(body_node);
+			return deep;
+		}
+		
+		static boolean deep(CallStack stack) { return stack.left <= 0 && !JIPL.segments; }
+		
+		// the frame holding the arguments to run the body on, or what the call returns when it is already over
+		protected Object enter(CallStack stack, RTResult res, Context new_context, Value... args) {
+			if(args.length != args_name.length)
+				return res.failure(new Error.RuntimeError("Incorrect number of argument have been passed in " + name, getSeq()));
+			for(int i = 0; i < args.length; i++)
+				args[i].generateContext(new_context);
+			
+			JIT.Compiled compiled = profile.compiled;
+			if(compiled == null && JIPL.jit && profile.hot()) compiled = profile.compiled(this);
+			if(compiled != null) {
+				Object ret = compiled.run(args, res);
+				if(ret != null) return res.success(ret);
+			}
+			
+			Frame new_frame = stack.frame(frameSize, frame);
+			for(int i = 0; i < args.length; i++)
+				new_frame.slots[i] = args[i];
+			return new_frame;
+		}
+		
+		// what the call returns once its body gave value
+		protected Object complete(RTResult res, Object value) {
+			value = res.register(value);
 			
 			if(res.shouldReturn() && res.returnValue == null) return res;
 			
-			Object ret = shouldAutoReturn?value:(res.returnValue!=null?res.returnValue:Number.NULL);
+			Object ret = shouldAutoReturn && !(res.returnValue instanceof TailCall)?value:(res.returnValue!=null?res.returnValue:Number.NULL);
 			return res.success(ret);
 		}
 		
 		public Value copy() {
 			Function func = new Function(name, body_node, args_name, shouldAutoReturn);
+			func.setFrame(frameSize, frame).setBytecode(bytecode).setProfile(profile);
+			func.deep = deep;
 			func.setContext(context);
-			func.setSeq(seq);
+			func.setOrigin(origin);
 			return func;
 		}
 		
@@ -395,6 +887,22 @@ public class Interpreter {
 		
 	}
 	
+	/**
+	 * Returned instead of running a call in tail position, {@link Function#execute} then runs it in place of the caller.
+	 */
+	public static class TailCall {
+		
+		protected final Function function;
+		protected final Value[] args;
+		protected final Token token;
+		
+		public TailCall(Function function, Value[] args, Token token) {
+			this.function = function;
+			this.args = args;
+			this.token = token;
+		}
+	}
+	
 	public static class List extends Value implements Serializable {
 		private static final long serialVersionUID = 1L;
 		
@@ -405,7 +913,6 @@ public class Interpreter {
 		public Value copy() {
 			List list = new List(new ArrayList<Object>());
 			list.elements.addAll(elements);
-			list.context = this.context;
 			return list;
 		}
 		
@@ -422,30 +929,32 @@ public class Interpreter {
 			return list;
 		}
 		
-		public Context generateContext(Context context) {
-			Context selfContext = new Context("<list>", context);
-			selfContext.set("add", new BuildInFunction("add", "element") {
+		protected static final HashMap<String, BuildInMethod> METHODS = new HashMap<String, BuildInMethod>();
+		static {
+			METHODS.put("add", new BuildInMethod("add", "element") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					elements.add(args[0]);
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					((List) self).elements.add(args[0]);
 					return res.success(args[0]);
 				}
 			});
-			selfContext.set("get", new BuildInFunction("get", "index") {
+			METHODS.put("get", new BuildInMethod("get", "index") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					ArrayList<Object> elements = ((List) self).elements;
 					if(args[0] instanceof Number) {
 						int index = (int) ((Number)args[0]).value;
 						if(index < 0 || index >= elements.size())
 							return res.failure(new Error.RuntimeError("Index out of bounds " + index, null));
 						return res.success(elements.get(index));
 					}
-					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", null));
 				}
 			});
-			selfContext.set("set", new BuildInFunction("set", "index", "object") {
+			METHODS.put("set", new BuildInMethod("set", "index", "object") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					ArrayList<Object> elements = ((List) self).elements;
 					if(args[0] instanceof Number) {
 						int index = (int) ((Number)args[0]).value;
 						if(index < 0 || index >= elements.size())
@@ -453,12 +962,13 @@ public class Interpreter {
 						elements.set(index, args[1]);
 						return args[1];
 					}
-					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", null));
 				}
 			});
-			selfContext.set("insert", new BuildInFunction("insert", "index", "object") {
+			METHODS.put("insert", new BuildInMethod("insert", "index", "object") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					ArrayList<Object> elements = ((List) self).elements;
 					if(args[0] instanceof Number) {
 						int index = (int) ((Number)args[0]).value;
 						if(index < 0 || index > elements.size())
@@ -466,12 +976,13 @@ public class Interpreter {
 						elements.add(index, args[1]);
 						return args[1];
 					}
-					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", null));
 				}
 			});
-			selfContext.set("join", new BuildInFunction("join", "by") {
+			METHODS.put("join", new BuildInMethod("join", "by") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					ArrayList<Object> elements = ((List) self).elements;
 					String el = "";
 					for(int i = 0; i < elements.size(); i++) {
 						el+=elements.get(i);
@@ -481,29 +992,29 @@ public class Interpreter {
 					return res.success(new StringValue(el));
 				}
 			});
-			selfContext.set("indexOf", new BuildInFunction("indexOf", "obj") {
+			METHODS.put("indexOf", new BuildInMethod("indexOf", "obj") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					return res.success(new Number(elements.indexOf(args[0])));
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					return res.success(Number.of(((List) self).elements.indexOf(args[0])));
 				}
 			});
-			selfContext.set("clear", new BuildInFunction("clear") {
+			METHODS.put("clear", new BuildInMethod("clear") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					elements.clear();
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
+					((List) self).elements.clear();
 					return res.success(Number.NULL);
 				}
 			});
-			selfContext.set("foreach", new BuildInFunction("foreach", "function") {
+			METHODS.put("foreach", new BuildInMethod("foreach", "function") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) {
 
 					BaseFunction fun = null;
 					if(args[0] instanceof BaseFunction) fun = (BaseFunction) args[0];
 					else return res.failure(new RuntimeError("Invalid argument type, "+args[0]+" is not allowed in the function '"+name+"'", null));
 					
 					List l = new List(new ArrayList<Object>());
-					for(Object el:elements) {
+					for(Object el:((List) self).elements) {
 						Object o = res.register(fun.execute((Value) el));
 						if(res.shouldReturn()) return res;
 						l.elements.add(o);
@@ -512,14 +1023,19 @@ public class Interpreter {
 					return res.success(l);
 				}
 			});
-			selfContext.set("size", new BuildInFunction("size") {
+			METHODS.put("size", new BuildInMethod("size") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) { return new Number(elements.size()); }
+				protected Object executeMethod(Value self, Context context, RTResult res, Value... args) { return Number.of(((List) self).elements.size()); }
 			});
-			
-			this.context = selfContext;
-			this.context.newParent(context);
-			return selfContext;
+		}
+		
+		public Context generateContext(Context context) {
+			if(this.context != null) {
+				this.context.newParent(context);
+				return this.context;
+			}
+			this.context = new MemberContext("<list>", context, this, METHODS);
+			return this.context;
 		}
 		
 		public ArrayList<Object> getElements() { return elements; }
@@ -531,6 +1047,12 @@ public class Interpreter {
 		private static final long serialVersionUID = 1L;
 		
 		protected Object body, superClass;
+		protected Shape shape = new Shape();
+		protected HashMap<String, Integer> methodIndex = new HashMap<String, Integer>();
+		protected Function[] methods = new Function[0];
+		protected boolean[] inherited = new boolean[0];
+		protected int[] operators = resolveOperators();
+		protected int fields = 4;
 		
 		public ObjectClass(String name, String[] args_name, Object body, Object superClass) {
 			super(name);
@@ -539,11 +1061,44 @@ public class Interpreter {
 			this.superClass = superClass;
 		}
 		
+		public ObjectClass setMethods(Function... own) {
+			ArrayList<Function> table = new ArrayList<Function>();
+			if(superClass instanceof ObjectClass) {
+				methodIndex.putAll(((ObjectClass) superClass).methodIndex);
+				table.addAll(Arrays.asList(((ObjectClass) superClass).methods));
+			}
+			for(Function method:own) {
+				Integer index = methodIndex.get(method.name);
+				if(index != null) table.set(index, method);
+				else {
+					methodIndex.put(method.name, table.size());
+					table.add(method);
+				}
+			}
+			methods = table.toArray(methods);
+			inherited = new boolean[methods.length];
+			if(superClass instanceof ObjectClass)
+				for(int i = 0; i < ((ObjectClass) superClass).methods.length; i++) inherited[i] = methods[i] == ((ObjectClass) superClass).methods[i];
+			operators = resolveOperators();
+			return this;
+		}
+		
+		protected int[] resolveOperators() {
+			int[] operators = new int[BinaryOperation.OVERLOADS.length];
+			for(int i = 0; i < operators.length; i++) operators[i] = method(BinaryOperation.OVERLOADS[i]);
+			return operators;
+		}
+		
+		public int method(String name) {
+			Integer index = methodIndex.get(name);
+			return index==null?-1:index;
+		}
+		
 		public Object execute(Context con, Value... args) {
 			RTResult res = new RTResult();
 			
 			Interpreter interpreter = new Interpreter();
-			Context new_context = generateNewContext(con);
+			ObjectContext new_context = new ObjectContext(name, con, this);
 			
 			ObjectValue obj = new ObjectValue(new_context);
 			new_context.set("type", this);
@@ -558,7 +1113,7 @@ public class Interpreter {
 							return res;
 						
 						if(extend instanceof ObjectValue)
-							new_context.symbols.putAll(((ObjectValue) extend).selfContext.symbols);
+							new_context.inherit(((ObjectValue) extend).selfContext);
 						
 						new_context.set("type", getThis());
 						new_context.set("super", extend);
@@ -610,6 +1165,159 @@ public class Interpreter {
 		
 	}
 	
+	public static class Shape implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		protected final String[] names;
+		protected final HashMap<String, Integer> indices;
+		protected final HashMap<String, Shape> transitions = new HashMap<String, Shape>();
+		
+		public Shape() { this(new String[0], new HashMap<String, Integer>()); }
+		private Shape(String[] names, HashMap<String, Integer> indices) {
+			this.names = names;
+			this.indices = indices;
+		}
+		
+		public int index(String name) {
+			Integer index = indices.get(name);
+			return index==null?-1:index;
+		}
+		
+		public synchronized Shape with(String name) {
+			Shape next = transitions.get(name);
+			if(next == null) {
+				String[] names = Arrays.copyOf(this.names, this.names.length+1);
+				names[this.names.length] = name;
+				HashMap<String, Integer> indices = new HashMap<String, Integer>(this.indices);
+				indices.put(name, this.names.length);
+				transitions.put(name, next = new Shape(names, indices));
+			}
+			return next;
+		}
+		
+		public int size() { return names.length; }
+	}
+	
+	public static class ObjectContext extends Context {
+		private static final long serialVersionUID = 1L;
+		
+		protected ObjectClass type;
+		protected Shape shape;
+		protected Object[] fields;
+		protected Function[] bound;
+		// the instance super() built, the methods this type did not override are its own, bound to it
+		protected ObjectContext extended;
+		
+		public ObjectContext(String displayName, Context parent, ObjectClass type) {
+			super(displayName, parent);
+			this.type = type;
+			this.shape = type.shape;
+			this.fields = new Object[type.fields];
+		}
+		
+		protected int slot(String name) {
+			int index = shape.index(name);
+			return index >= 0 && fields[index] != null?index:-1;
+		}
+		
+		// null for an inherited method as long as super() has not been called
+		protected Function method(int index) {
+			if(type.inherited[index]) return extended == null?null:extended.method(index);
+			if(bound == null) bound = new Function[type.methods.length];
+			Function method = bound[index];
+			if(method == null) {
+				method = (Function) type.methods[index].copy();
+				method.setContext(this);
+				bound[index] = method;
+			}
+			return method;
+		}
+		
+		protected int method(String name) {
+			int index = type.method(name);
+			return index >= 0 && type.inherited[index] && extended == null?-1:index;
+		}
+		
+		protected boolean has(String name) { return slot(name) >= 0 || symbols.containsKey(name) || method(name) >= 0; }
+		
+		public void inherit(Context other) {
+			if(other instanceof ObjectContext) {
+				ObjectContext o = (ObjectContext) other;
+				if(o.type == type.superClass) extended = o;
+				for(int i = 0; i < o.shape.size(); i++)
+					if(o.fields[i] != null) set(o.shape.names[i], o.fields[i]);
+			}
+			putAll(other);
+		}
+		
+		public void set(String name, Object value) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) {
+				super.set(name, value);
+				return;
+			}
+			int index = shape.index(name);
+			if(index < 0) {
+				shape = shape.with(name);
+				index = shape.size()-1;
+				if(index >= fields.length) fields = Arrays.copyOf(fields, Math.max(4, fields.length*2));
+				if(index >= type.fields) type.fields = index+1;
+			}
+			fields[index] = value;
+		}
+		
+		public void set(String name, Object value, Consumer<Object> setterTrack, Callable<Object> getterTrack) {
+			remove(name);
+			super.set(name, value, setterTrack, getterTrack);
+		}
+		
+		public Object get(String name) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) return super.get(name);
+			int index = slot(name);
+			if(index >= 0) return fields[index];
+			index = method(name);
+			if(index >= 0) return method(index);
+			if(parent != null && parent != this && parent.parent != this) return parent.get(name);
+			return Number.NULL;
+		}
+		
+		public Context getSource(String name) { return has(name)?this:super.getSource(name); }
+		public Context getSource(String name, Context def) { return has(name)?this:super.getSource(name, def); }
+		
+		public Object strictget(String name) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) return symbols.get(name);
+			int index = slot(name);
+			if(index >= 0) return fields[index];
+			index = method(name);
+			return index >= 0?method(index):null;
+		}
+		
+		public void remove(String name) {
+			int index = shape.index(name);
+			if(index >= 0) fields[index] = null;
+			super.remove(name);
+		}
+		
+		public Object operator(int operator) {
+			int index = type.operators[operator];
+			return index >= 0?method(index):strictget(BinaryOperation.OVERLOADS[operator]);
+		}
+		
+		public Object shape() { return shape; }
+		public Object resolve(String name) {
+			if(!symbols.isEmpty() && symbols.containsKey(name)) return null;
+			int index = shape.index(name);
+			if(index >= 0) return index;
+			index = method(name);
+			return index >= 0?-1-index:null;
+		}
+		public Object get(String name, Object resolved) {
+			int index = (Integer) resolved;
+			if(!symbols.isEmpty() || index >= 0 && fields[index] == null) return get(name);
+			Object value = index >= 0?fields[index]:method(-1-index);
+			return value != null?value:get(name);
+		}
+	}
+	
 	public static class ObjectValue extends Value implements Serializable {
 		private static final long serialVersionUID = 1L;
 		
@@ -618,30 +1326,53 @@ public class Interpreter {
 		
 		public Context generateContext(Context context) {
 			this.context = context;
-			selfContext.parent = context;
+			selfContext.setParent(context);
 			return selfContext;
 		}
 		
-		protected Object add(Object obj) {
-			if(selfContext != null && selfContext.symbols.containsKey("add_"))
-				return selfContext.function("add_").execute((Value) obj);
-			return new StringValue(this+""+obj);
+		protected BaseFunction operator(int operator) {
+			if(selfContext == null) return null;
+			Object function = selfContext.operator(operator);
+			return function instanceof BaseFunction?(BaseFunction) function:null;
 		}
-		protected Object sub(Object obj) {
-			if(selfContext != null && selfContext.symbols.containsKey("sub_"))
-				return selfContext.function("sub_").execute((Value) obj);
-			return illegal_operation(obj);
+		
+		public Object _equals(Object obj) {
+			BaseFunction function = operator(BinaryOperation.EQUALS);
+			return function!=null?function.execute((Value) obj):super._equals(obj);
 		}
-		protected Object mult(Object obj) {
-			if(selfContext != null && selfContext.symbols.containsKey("mult_")) {
-				return selfContext.function("mult_").execute((Value) obj);
+		public Object _not_equals(Object obj) {
+			BaseFunction function = operator(BinaryOperation.NOT_EQUALS);
+			if(function != null) return function.execute((Value) obj);
+			Object equals = _equals(obj);
+			if(equals instanceof RTResult) {
+				if(((RTResult) equals).error != null) return equals;
+				equals = ((RTResult) equals).value;
 			}
-			return illegal_operation(obj);
+			return equals instanceof Value && ((Value) equals).isTrue()?Number.FALSE:Number.TRUE;
 		}
-		protected Object div(Object obj) {
-			if(selfContext != null && selfContext.symbols.containsKey("div_"))
-				return selfContext.function("div_").execute((Value) obj);
-			return illegal_operation(obj);
+		public Object _less(Object obj) {
+			BaseFunction function = operator(BinaryOperation.LESS);
+			return function!=null?function.execute((Value) obj):super._less(obj);
+		}
+		public Object _greater(Object obj) {
+			BaseFunction function = operator(BinaryOperation.GREATER);
+			return function!=null?function.execute((Value) obj):super._greater(obj);
+		}
+		public Object _less_equals(Object obj) {
+			BaseFunction function = operator(BinaryOperation.LESS_EQUALS);
+			return function!=null?function.execute((Value) obj):super._less_equals(obj);
+		}
+		public Object _greater_equals(Object obj) {
+			BaseFunction function = operator(BinaryOperation.GREATER_EQUALS);
+			return function!=null?function.execute((Value) obj):super._greater_equals(obj);
+		}
+		public Object _and(Object obj) {
+			BaseFunction function = operator(BinaryOperation.AND);
+			return function!=null?function.execute((Value) obj):super._and(obj);
+		}
+		public Object _or(Object obj) {
+			BaseFunction function = operator(BinaryOperation.OR);
+			return function!=null?function.execute((Value) obj):super._or(obj);
 		}
 		
 		public Value copy() { return this; }
@@ -653,6 +1384,35 @@ public class Interpreter {
 		}
 	}
 	
+	public static class Frame {
+		
+		public final Object[] slots;
+		public final Frame parent;
+		protected boolean captured;
+		
+		public Frame(int size, Frame parent) {
+			this.slots = new Object[size];
+			this.parent = parent;
+		}
+		
+		public Frame at(int depth) {
+			Frame f = this;
+			for(int i = 0; i < depth; i++) f = f.parent;
+			return f;
+		}
+		
+		public Object get(int depth, int slot) { return at(depth).slots[slot]; }
+		public void set(int depth, int slot, Object value) { at(depth).slots[slot] = value; }
+	}
+	
+	protected Frame frame;
+	private final RTResult result = new RTResult();
+	
+	static final RTResult CONTINUE = new RTResult().success_continue(), BREAK = new RTResult().success_break();
+	
+	public Interpreter() {}
+	public Interpreter(Frame frame) { this.frame = frame; }
+	
 	public static class RTResult {
 		
 		public Object value = null, returnValue = null;
@@ -730,104 +1490,100 @@ public class Interpreter {
 		}
 	}
 	
+	private RTResult result(Object value, Token associatedToken) {
+		result.value = value;
+		result.associatedToken = associatedToken;
+		return result;
+	}
+	
 	public Object visit(Object node, Context context) {
 		if(JIPL.debug) System.out.println("Intepreter: Visit " + node); //+ "["+context+"]");
 		if(JIPL.stop) return new RTResult().failure(new Error.Stop("Stop", null));
 		
-			 if(node instanceof NumberNode) 		return visitNumberNode		((NumberNode) node, 		context);
-		else if(node instanceof StringNode) 		return visitStringNode		((StringNode) node, 		context);
-		else if(node instanceof BinaryOperation) 	return visitBinaryOperation	((BinaryOperation) node,	context);
-		else if(node instanceof UnaryOperation) 	return visitUnaryOperation	((UnaryOperation) node, 	context);
-		else if(node instanceof VarAccessNode)		return visitVarAccessNode	((VarAccessNode) node, 		context);
-		else if(node instanceof ThisNode)			return visitThisNode		((ThisNode) node, 			context);
-		else if(node instanceof VarAssignNode) 		return visitVarAssignNode	((VarAssignNode) node, 		context);
-		else if(node instanceof IfNode) 			return visitIfNode			((IfNode) node,				context);
-		else if(node instanceof VarModifyNode) 		return visitVarModifyNode	((VarModifyNode) node, 		context);
-		else if(node instanceof VarAddNode) 		return visitVarAddNode		((VarAddNode) node, 		context);
-		else if(node instanceof VarSubNode) 		return visitVarSubNode		((VarSubNode) node,			context);
-		else if(node instanceof VarMultNode) 		return visitVarMultNode		((VarMultNode) node, 		context);
-		else if(node instanceof VarDivNode) 		return visitVarDivNode		((VarDivNode) node,			context);
-		else if(node instanceof ForNode) 			return visitForNode			((ForNode) node,			context);
-		else if(node instanceof ForInNode) 			return visitForInNode		((ForInNode) node, 			context);
-		else if(node instanceof WhileNode) 			return visitWhileNode		((WhileNode) node, 			context);
-		else if(node instanceof CallNode) 			return visitCallNode		((CallNode) node, 			context);
-		else if(node instanceof FunctionDefNode) 	return visitFunctionDefNode	((FunctionDefNode) node, 	context);
-		else if(node instanceof ListNode)			return visitListNode		((ListNode) node, 			context);
-		else if(node instanceof StatementsNode)		return visitStatementsNode	((StatementsNode) node,		context);
-		else if(node instanceof ReturnNode)			return visitReturnNode		((ReturnNode) node, 		context);
-		else if(node instanceof ContinueNode)		return visitContinueNode	((ContinueNode) node, 		context);
-		else if(node instanceof BreakNode)			return visitBreakNode		((BreakNode) node, 			context);
-		else if(node instanceof PointAccessNode)	return visitPointAccessNode	((PointAccessNode) node,	context);
-		else if(node instanceof InstantiateNode)	return visitInstantiateNode	((InstantiateNode) node,	context);
-		else if(node instanceof ObjectDefNode)		return visitObjectDefNode	((ObjectDefNode) node,		context);
-		else if(node instanceof IncludeNode)		return visitIncludeNode		((IncludeNode) node, 		context);
+		if(node instanceof Node) return ((Node) node).execute(this, context);
 		
 		System.out.println(node);
 		System.err.println("Intepreter: No visit for " + node + ".");
 		return node;
 	}
 
-	private Object visitNumberNode(NumberNode node, Context context) {
-		return new RTResult().success(new Number(node.token.getValue()).setSeq(node.token.getSeq()));
+	Object visitNumberNode(NumberNode node, Context context) {
+		return result(node.value, null);
 	}
 	
-	private Object visitStringNode(StringNode node, Context context) {
-		return new RTResult().success(new StringValue(node.token.getValue()).setSeq(node.token.getSeq()));
+	Object visitStringNode(StringNode node, Context context) {
+		return result(node.value, null);
 	}
 	
-	private Object visitVarAccessNode(VarAccessNode node, Context context) {
-		RTResult res = new RTResult();
-		String vname = (String) node.name.value;
-		Object value = context.get(vname);
+	Object visitVarAccessNode(VarAccessNode node, Context context) {
+		Object value = node.slot>=0?frame.get(node.depth, node.slot):node.cache!=null?node.cache.get(context, (String) node.name.value):node.global!=null?node.global.get(context, (String) node.name.value):context.get((String) node.name.value);
 		
-		res.associatedToken = node.name;
-		
-		if(value == Number.NULL) {
+		if(value == Number.NULL || value == null) {
 //			System.out.println("CON " + context + " " + context.symbols);
-			return res.failure(new Error.NullPointerError(vname + " is not defined", node.name.getSeq()));
+			RTResult res = new RTResult();
+			res.associatedToken = node.name;
+			return res.failure(new Error.NullPointerError(node.name.value + " is not defined", node.name.getSeq()));
 		}
 		
-		return res.success(value);
+		return result(value, node.name);
 	}
 	
-	private Object visitThisNode(ThisNode node, Context context) {
+	Object visitThisNode(ThisNode node, Context context) {
 		RTResult res = new RTResult();
 		return res.success(new ObjectValue(context));
 	}
 	
-	private Object visitVarAssignNode(VarAssignNode node, Context context) {
-		RTResult res = new RTResult();
-		
-		String vname = (String) node.name.value;
-		Object value = res.register(visit(node.expression, context));
-		
-		if(res.shouldReturn()) return res;
+	Object visitVarAssignNode(VarAssignNode node, Context context) {
+		Object value = visit(node.expression, context);
+		Token assoc = null;
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			value = pr.value;
+		}
 		
-		context.set(vname, value);
+		if(node.slot<0) context.set((String) node.name.value, value);
+		else frame.set(node.depth, node.slot, value);
 		
-		return res.success(value);
+		return result(value, assoc);
 	}
 	
-	private Object visitVarModifyNode(VarModifyNode node, Context context) {
-		RTResult res = new RTResult();
-		
+	Object visitVarModifyNode(VarModifyNode node, Context context) {
 		String name = (String) node.name.value;
-		Object value = res.register(visit(node.node, context));
-		if(res.shouldReturn()) return res;
-		if(!name.equals("this")) {
+		Object value = visit(node.node, context);
+		Token assoc = null;
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			value = pr.value;
+		}
+		if(node.slot>=0) frame.set(node.depth, node.slot, value);
+		else if(!name.equals("this")) {
 			if(context.parent == null || context.displayName.equals("<Global>")) context.set(name, value);
 			else context.getSource(name).set(name, value);
 		}
 		
-		return res.success(value);
+		return result(value, assoc);
 	}
 	
-	private Object visitVarAddNode(VarAddNode node, Context context) {
-		RTResult res = new RTResult();
-		
+	Object visitVarAddNode(VarAddNode node, Context context) {
 		String name = (String) node.name.value;
-		Object value = res.register(visit(node.node, context));
-		if(res.shouldReturn()) return res;
+		Object value = visit(node.node, context);
+		Token assoc = null;
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			value = pr.value;
+		}
+		
+		if(node.slot>=0) {
+			Frame f = frame.at(node.depth);
+			f.slots[node.slot] = ((Value) f.slots[node.slot]).add(value);
+			return result(f.slots[node.slot], assoc);
+		}
 		
 		if(!name.equals("this")) {
 			Context con = context.getSource(name);
@@ -836,50 +1592,79 @@ public class Interpreter {
 			return con.get(name);
 		}
 		
-		return res.success(value);
+		return result(value, assoc);
 	}
 	
-	private Object visitVarSubNode(VarSubNode node, Context context) {
-		RTResult res = new RTResult();
-		
+	Object visitVarSubNode(VarSubNode node, Context context) {
 		String name = (String) node.name.value;
-		Object value = res.register(visit(node.node, context));
-		if(res.shouldReturn()) return res;
+		Object value = visit(node.node, context);
+		Token assoc = null;
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			value = pr.value;
+		}
+		
+		if(node.slot>=0) {
+			Frame f = frame.at(node.depth);
+			f.slots[node.slot] = ((Value) f.slots[node.slot]).sub(value);
+			return result(f.slots[node.slot], assoc);
+		}
 		
 		if(!name.equals("this")) {
 			Context con = context.getSource(name);
 			con.set(name, ((Value) con.get(name)).sub(value));
 			
-			return res.success(con.get(name));
+			return result(con.get(name), assoc);
 		}
 		
-		return res.success(value);
+		return result(value, assoc);
 	}
 	
-	private Object visitVarMultNode(VarMultNode node, Context context) {
-		RTResult res = new RTResult();
-		
+	Object visitVarMultNode(VarMultNode node, Context context) {
 		String name = (String) node.name.value;
-		Object value = res.register(visit(node.node, context));
-		if(res.shouldReturn()) return res;
+		Object value = visit(node.node, context);
+		Token assoc = null;
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			value = pr.value;
+		}
+		
+		if(node.slot>=0) {
+			Frame f = frame.at(node.depth);
+			f.slots[node.slot] = ((Value) f.slots[node.slot]).mult(value);
+			return result(f.slots[node.slot], assoc);
+		}
 		
 		if(!name.equals("this")) {
 			Context con = context.getSource(name);
 			con.set(name, ((Value) con.get(name)).mult(value));
 			
-			return res.success(con.get(name));
+			return result(con.get(name), assoc);
 		}
 		
-		return res.success(value);
+		return result(value, assoc);
 	}
 	
-	private Object visitVarDivNode(VarDivNode node, Context context) {
+	Object visitVarDivNode(VarDivNode node, Context context) {
 		RTResult res = new RTResult();
 		
 		String name = (String) node.name.value;
 		Object value = res.register(visit(node.node, context));
 		if(res.shouldReturn()) return res;
 		
+		if(node.slot>=0) {
+			Frame f = frame.at(node.depth);
+			Object val = res.register(((Value) f.slots[node.slot]).div(value));
+			if(res.shouldReturn()) return res;
+			
+			f.slots[node.slot] = val;
+			return res.success(val);
+		}
+		
 		if(!name.equals("this")) {
 			Context con = context.getSource(name);
 			Object val = res.register(((Value) con.get(name)).div(value));
@@ -893,39 +1678,115 @@ public class Interpreter {
 		return res.success(value);
 	}
 	
-	private Object visitBinaryOperation(BinaryOperation node, Context context) {
-		RTResult res = new RTResult();
+	Object visitBinaryOperation(BinaryOperation node, Context context) {
+		Object leftObj = visit(node.leftNode, context);
+		Token assoc = null;
+		if(leftObj instanceof RTResult) {
+			RTResult pr = (RTResult) leftObj;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			leftObj = pr.value;
+		}
 		
-		Object leftObj = res.register(visit(node.leftNode, context));
-		if(res.shouldReturn()) return res;
-		Value left = (Value) leftObj;
+		if(node.isLogical()) {
+			Object shortCircuit = shortCircuit(leftObj, node.operator);
+			if(shortCircuit != null) return shortCircuit;
+		}
 		
-		Object rightObj = (Object)res.register(visit(node.rightNode, context));
-		if(res.shouldReturn()) return res;
-		Value right = (Value) rightObj;
-		
-			 if(node.operationToken.matches(TokenType.PLUS)) 	return res.register(left.add(right));
-		else if(node.operationToken.matches(TokenType.MINUS))	return res.register(left.sub(right));
-		else if(node.operationToken.matches(TokenType.MULT)) 	return res.register(left.mult(right));
-		else if(node.operationToken.matches(TokenType.DIV)) 	return res.register(left.div(right));
-		else if(node.operationToken.matches(TokenType.DOUBLE_EQUALS))	return res.register(left._equals(right));
-		else if(node.operationToken.matches(TokenType.NOT_EQUALS)) 		return res.register(left._not_equals(right));
-		else if(node.operationToken.matches(TokenType.LESS)) 			return res.register(left._less(right));
-		else if(node.operationToken.matches(TokenType.LESS_EQUALS)) 	return res.register(left._less_equals(right));
-		else if(node.operationToken.matches(TokenType.GREATER)) 		return res.register(left._greater(right));
-		else if(node.operationToken.matches(TokenType.GREATER_EQUALS)) 	return res.register(left._greater_equals(right));
-		else if(node.operationToken.matches("and", TokenType.KEYWORD)) 	return res.register(left._and(right));
-		else if(node.operationToken.matches("or", TokenType.KEYWORD))	return res.register(left._or(right));
-		
-		return res;
+		if(node.state == BinaryOperation.CONSTANT) {
+			if(leftObj instanceof Number) return unwrap(compute(node.operator, (Number) leftObj, ((NumberNode) node.rightNode).value), assoc);
+			node.state = BinaryOperation.GENERIC;
+		}
+		
+		Object rightObj = visit(node.rightNode, context);
+		if(rightObj instanceof RTResult) {
+			RTResult pr = (RTResult) rightObj;
+			if(pr.shouldReturn()) {
+				if(pr.error != null && assoc != null) pr.error.add(assoc);
+				return pr;
+			}
+			assoc = pr.associatedToken;
+			rightObj = pr.value;
+		}
+		
+		if(node.state == BinaryOperation.NUMBERS) {
+			if(leftObj instanceof Number && rightObj instanceof Number) return unwrap(compute(node.operator, (Number) leftObj, (Number) rightObj), assoc);
+			node.state = BinaryOperation.GENERIC;
+		} else if(node.state == BinaryOperation.UNINITIALIZED) {
+			if(leftObj instanceof Number && rightObj instanceof Number && node.operator != BinaryOperation.NONE) {
+				node.state = node.rightNode instanceof NumberNode?BinaryOperation.CONSTANT:BinaryOperation.NUMBERS;
+				return unwrap(compute(node.operator, (Number) leftObj, (Number) rightObj), assoc);
+			}
+			node.state = BinaryOperation.GENERIC;
+		}
+		
+		Value left = (Value) leftObj, right = (Value) rightObj;
+		switch(node.operator) {
+			case BinaryOperation.ADD: 				return unwrap(left.add(right), assoc);
+			case BinaryOperation.SUB: 				return unwrap(left.sub(right), assoc);
+			case BinaryOperation.MULT: 				return unwrap(left.mult(right), assoc);
+			case BinaryOperation.DIV: 				return unwrap(left.div(right), assoc);
+			case BinaryOperation.EQUALS: 			return unwrap(left._equals(right), assoc);
+			case BinaryOperation.NOT_EQUALS: 		return unwrap(left._not_equals(right), assoc);
+			case BinaryOperation.LESS: 				return unwrap(left._less(right), assoc);
+			case BinaryOperation.LESS_EQUALS: 		return unwrap(left._less_equals(right), assoc);
+			case BinaryOperation.GREATER: 			return unwrap(left._greater(right), assoc);
+			case BinaryOperation.GREATER_EQUALS: 	return unwrap(left._greater_equals(right), assoc);
+			case BinaryOperation.AND: 				return unwrap(left._and(right), assoc);
+			case BinaryOperation.OR: 				return unwrap(left._or(right), assoc);
+		}
+		
+		return result(null, assoc);
 	}
 	
-	private static final Number MINUS_ONE = new Number(-1);
-	private Object visitUnaryOperation(UnaryOperation node, Context context) {
-		RTResult res = new RTResult();
-		
-		Object obj = res.register(visit(node.node, context));
-		if(res.shouldReturn()) return res;
+	private static Object unwrap(Object value, Token assoc) {
+		if(value instanceof RTResult) {
+			RTResult pr = (RTResult) value;
+			if(pr.error == null) return pr.value;
+			if(assoc != null) pr.error.add(assoc);
+			return pr;
+		}
+		if(value instanceof Error) {
+			RTResult res = new RTResult();
+			res.associatedToken = assoc;
+			return res.failure((Error) value);
+		}
+		return value;
+	}
+	
+	static Object compute(int operator, Number left, Number right) {
+		switch(operator) {
+			case BinaryOperation.ADD: 				return left.plus(right);
+			case BinaryOperation.SUB: 				return left.minus(right);
+			case BinaryOperation.MULT: 				return left.times(right);
+			case BinaryOperation.DIV: 				return right.value == 0?new Error.RuntimeError("Division by zero", right.getSeq()):left.divided(right);
+			case BinaryOperation.EQUALS: 			return Number.of(left.isEqualTo(right));
+			case BinaryOperation.NOT_EQUALS: 		return Number.of(!left.isEqualTo(right));
+			case BinaryOperation.LESS: 				return Number.of(left.less(right));
+			case BinaryOperation.LESS_EQUALS: 		return Number.of(left.lessOrEqual(right));
+			case BinaryOperation.GREATER: 			return Number.of(right.less(left));
+			case BinaryOperation.GREATER_EQUALS: 	return Number.of(right.lessOrEqual(left));
+			case BinaryOperation.AND: 				return Number.of(left.isTrue() && right.isTrue());
+			default: 								return Number.of(left.isTrue() || right.isTrue());
+		}
+	}
+	
+	public static Object shortCircuit(Object left, int operator) {
+		if(!(left instanceof Number)) return null;
+		if(operator == BinaryOperation.AND) return ((Number) left).isTrue()?null:Number.FALSE;
+		return ((Number) left).isTrue()?Number.TRUE:null;
+	}
+	
+	static final Number MINUS_ONE = Number.of(-1);
+	Object visitUnaryOperation(UnaryOperation node, Context context) {
+		Object obj = visit(node.node, context);
+		Token assoc = null;
+		if(obj instanceof RTResult) {
+			RTResult pr = (RTResult) obj;
+			if(pr.shouldReturn()) return pr;
+			assoc = pr.associatedToken;
+			obj = pr.value;
+		}
 		Number n = null;
 		if(obj instanceof Number) n = (Number) obj; 
 		else if(obj instanceof RTResult) n = (Number)((RTResult) obj).value;
@@ -933,10 +1794,10 @@ public class Interpreter {
 		if(node.operationToken.matches(TokenType.MINUS)) n = (Number) n.mult(MINUS_ONE);
 		else if(node.operationToken.matches("not", TokenType.KEYWORD)) n = (Number) n._not();
 		
-		return res.success(n);
+		return result(n, assoc);
 	}
 	
-	private Object visitIfNode(IfNode node, Context context) {
+	Object visitIfNode(IfNode node, Context context) {
 		RTResult res = new RTResult();
 		
 		for(CaseDataNode cdn:node.cases) {
@@ -947,7 +1808,7 @@ public class Interpreter {
 			if(res.shouldReturn()) return res;
 			
 			if(((Number) condition_value).isTrue()) {
-				Context newContext = new Context("<if "+condition+">", context);
+				Context newContext = cdn.scoped?new Context("<if>", context):context;
 				Object expression_value = res.register(visit(expression, newContext));
 				if(res.shouldReturn()) {
 					//System.out.println("   Should return.");
@@ -959,7 +1820,7 @@ public class Interpreter {
 		}
 		
 		if(node.else_case != null) {
-			Context newContext = new Context("<if>", context);
+			Context newContext = node.else_case.scoped?new Context("<if>", context):context;
 			Object else_value = res.register(visit(node.else_case.statements, newContext));
 			if(res.shouldReturn()) return res;
 			return res.success(node.else_case.shouldReturnNull?Number.NULL:else_value);
@@ -968,9 +1829,9 @@ public class Interpreter {
 		return res.success(Number.NULL);
 	}
 	
-	private Object visitForNode(ForNode node, Context context) {
+	Object visitForNode(ForNode node, Context context) {
 		RTResult res = new RTResult();
-		ArrayList<Object> elements = new ArrayList<Object>();
+		ArrayList<Object> elements = node.collects()?new ArrayList<Object>():null;
 		
 		Number start_value = (Number) res.register(visit(node.start, context));
 		if(res.shouldReturn()) return res;
@@ -978,37 +1839,38 @@ public class Interpreter {
 		Number end_value = (Number) res.register(visit(node.end, context));
 		if(res.shouldReturn()) return res;
 		
-		Number step_value = new Number(start_value.value<end_value.value?1:-1);
+		Number step_value = start_value.less(end_value)?Number.of(1):MINUS_ONE;
 		if(node.step != null) {
 			step_value = (Number) res.register(visit(node.step, context));
 			if(res.shouldReturn()) return res;
 		}
 		
-		Context newContext = new Context("<for>", context);
+		Context newContext = node.scoped?new Context("<for>", context):context;
 		
 		Number i = ((Number)start_value);
+		if(node.unboxed && i.integral && step_value.integral) i = new Number(i.integer);
 		
-		while((step_value.value >= 0?i.value<((Number)end_value).value:i.value>((Number)end_value).value)) {
-			newContext.set((String) node.varName.value, i);
+		while(step_value.value >= 0?i.less(end_value):end_value.less(i)) {
+			if(node.slot<0) newContext.set((String) node.varName.value, i);
+			else frame.slots[node.slot] = i;
 			
 			Object value = res.register(visit(node.body, newContext));
 			if(res.shouldReturn() && !res.shouldContinue && !res.shouldBreak) return res;
 			
-			i = (Number) i.copy();
-			i.value = i.value+step_value.value;
+			i = node.unboxed?i.advance(step_value):i.plus(step_value);
 			
-			if(res.shouldContinue) continue;
+			if(res.shouldContinue) { res.shouldContinue = false; continue; }
 			if(res.shouldBreak) break;
 			
-			elements.add(value);
+			if(elements != null) elements.add(value);
 		}
 		
-		return res.success(node.shouldReturnNull?Number.NULL:new List(elements));
+		return res.success(elements==null?Number.NULL:new List(elements));
 	}
 	
-	private Object visitForInNode(ForInNode node, Context context) {
+	Object visitForInNode(ForInNode node, Context context) {
 		RTResult res = new RTResult();
-		ArrayList<Object> elements = new ArrayList<Object>();
+		ArrayList<Object> elements = node.collects()?new ArrayList<Object>():null;
 		
 		Object objList = res.register(visit(node.array, context));
 		if(res.shouldReturn()) return res;
@@ -1016,10 +1878,11 @@ public class Interpreter {
 			return res.failure(new Error.RuntimeError("'"+objList + "' is not a list.", null));
 		ArrayList<Object> array = ((List) objList).elements; 
 		
-		Context newContext = new Context("<forin "+node.varName.value+">", context);
+		Context newContext = node.scoped?new Context("<forin>", context):context;
 		
 		for(int i = 0; i < array.size(); i++) {
-			newContext.set((String) node.varName.value, array.get(i));
+			if(node.slot<0) newContext.set((String) node.varName.value, array.get(i));
+			else frame.slots[node.slot] = array.get(i);
 			
 			Object value = res.register(visit(node.body, newContext));
 			if(res.shouldReturn() && !res.shouldContinue && !res.shouldBreak) {
@@ -1027,20 +1890,20 @@ public class Interpreter {
 				return res;
 			}
 			
-			if(res.shouldContinue) continue;
+			if(res.shouldContinue) { res.shouldContinue = false; continue; }
 			if(res.shouldBreak) break;
 			
-			elements.add(value);
+			if(elements != null) elements.add(value);
 		}
 		
-		return res.success(node.shouldReturnNull?Number.NULL:new List(elements));
+		return res.success(elements==null?Number.NULL:new List(elements));
 	}
 	
-	private Object visitWhileNode(WhileNode node, Context context) {
+	Object visitWhileNode(WhileNode node, Context context) {
 		RTResult res = new RTResult();
-		ArrayList<Object> elements = new ArrayList<Object>();
+		ArrayList<Object> elements = node.collects()?new ArrayList<Object>():null;
 		
-		Context newContext = new Context("<while>", context);
+		Context newContext = node.scoped?new Context("<while>", context):context;
 		
 		while(true) {
 			Object condition = res.register(visit(node.condition, context));
@@ -1052,22 +1915,22 @@ public class Interpreter {
 			
 			if(res.shouldReturn() && !res.shouldContinue && !res.shouldBreak) return res;
 			
-			if(res.shouldContinue) continue;
+			if(res.shouldContinue) { res.shouldContinue = false; continue; }
 			if(res.shouldBreak) break;
 			
-			elements.add(value);
+			if(elements != null) elements.add(value);
 		}
 		
-		return res.success(node.shouldReturnNull?Number.NULL:new List(elements));
+		return res.success(elements==null?Number.NULL:new List(elements));
 	}
 	
-	private Object visitFunctionDefNode(FunctionDefNode node, Context context) {
+	Object visitFunctionDefNode(FunctionDefNode node, Context context) {
 		RTResult res = new RTResult();
 		String fname = node.name==null?null:(String)node.name.value;
 		String[] args_name = new String[node.args.length];
 		for(int i = 0; i < args_name.length; i++) args_name[i] = (String) node.args[i].value;
 		
-		Object function = new Function(fname, node.body, args_name, node.shouldAutoReturn).setContext(context).setSeq(node.name==null?null:node.name.getSeq());
+		Object function = new Function(fname, node.body, args_name, node.shouldAutoReturn).setFrame(node.frameSize, frame).setProfile(node.profile).setContext(context).setOrigin(node.name);
 		
 		if(node.name != null)
 			context.set(fname, function);
@@ -1075,34 +1938,58 @@ public class Interpreter {
 		return res.success(function);
 	}
 	
-	private Object visitCallNode(CallNode node, Context context) {
+	Object visitCallNode(CallNode node, Context context) {
 		RTResult res = new RTResult();
 		
+		// a method of a string or a list is run on it straight away, no function is bound to the value for the call
+		if(node.nodeToCall instanceof VarAccessNode && context instanceof MemberContext) {
+			Token name = ((VarAccessNode) node.nodeToCall).name;
+			BuildInMethod method = ((MemberContext) context).method((String) name.value);
+			if(method != null) {
+				res.associatedToken = name;
+				Value[] args = arguments(node, context, res);
+				if(args == null) return res;
+				
+				Object return_value = res.register(method.call(((MemberContext) context).self, args));
+				if(res.shouldReturn()) return res;
+				
+				return res.success(return_value);
+			}
+		}
+		
 		Object obj = res.register(visit(node.nodeToCall, context));
 		if(res.shouldReturn()) return res;
 		
 		if(!(obj instanceof BaseFunction)) return obj;
+		if(obj == node.folding) return res.success(node.folded);
 		BaseFunction value_to_call = (BaseFunction) obj;
 		value_to_call.setContext(context);
 		
-		ArrayList<Value> args_value = new ArrayList<Value>();
-		for(Object a:node.args) {
-			a = res.register(visit(a, context));
-			if(a instanceof Value) args_value.add((Value) a);
-			else if(a instanceof RTResult) args_value.add((Value) ((RTResult) a).value);
-			if(res.shouldReturn()) return res;
-		}
+		Value[] args = arguments(node, context, res);
+		if(args == null) return res;
 		
-		Object exe = res.register(value_to_call.execute(args_value.toArray(new Value[args_value.size()])));
-		if(res.shouldReturn()) return res;
+		if(node.tail && value_to_call instanceof Function) return res.success(new TailCall((Function) value_to_call, args, res.associatedToken));
 		
-		Object return_value = res.register(exe);
+		Object return_value = res.register(value_to_call.execute(args));
 		if(res.shouldReturn()) return res;
 		
 		return res.success(return_value);
 	}
 	
-	private Object visitListNode(ListNode node, Context context) {
+	// null when one of them failed, the error being left in res
+	private Value[] arguments(CallNode node, Context context, RTResult res) {
+		Value[] args = new Value[node.args.length];
+		int count = 0;
+		for(Object a:node.args) {
+			a = res.register(visit(a, context));
+			if(a instanceof Value) args[count++] = (Value) a;
+			else if(a instanceof RTResult) args[count++] = (Value) ((RTResult) a).value;
+			if(res.shouldReturn()) return null;
+		}
+		return count < args.length?Arrays.copyOf(args, count):args;
+	}
+	
+	Object visitListNode(ListNode node, Context context) {
 		RTResult res = new RTResult();
 		ArrayList<Object> elements = new ArrayList<Object>();
 		List l = new List(elements);
@@ -1114,16 +2001,16 @@ public class Interpreter {
 		return res.success(l);
 	}
 	
-	private Object visitStatementsNode(StatementsNode node, Context context) {
+	Object visitStatementsNode(StatementsNode node, Context context) {
 		RTResult res = new RTResult();
 		for(Object o:node.elementNodes) {
 			res.register(visit(o, context));
 			if(res.shouldReturn()) return res;
 		}
-		return res.success(new ObjectValue(context));
+		return res.success(node.discarded?Number.NULL:new ObjectValue(context));
 	}
 	
-	private Object visitReturnNode(ReturnNode node, Context context) {
+	Object visitReturnNode(ReturnNode node, Context context) {
 		RTResult res = new RTResult();
 		
 		Object value = Number.NULL;
@@ -1135,10 +2022,40 @@ public class Interpreter {
 		return res.success_return(value);
 	}
 	
-	private Object visitContinueNode(ContinueNode node, Context context) { return new RTResult().success_continue(); }
-	private Object visitBreakNode(BreakNode node, Context context) { return new RTResult().success_break(); }
+	Object visitInvariantNode(InvariantNode node, Context context) {
+		Object value = recall(node, frame);
+		if(value != null) return result(value, null);
+		
+		Object computed = visit(node.node, context);
+		if(!(computed instanceof RTResult)) memorize(node, frame, computed);
+		else if(((RTResult) computed).error == null) memorize(node, frame, ((RTResult) computed).value);
+		return computed;
+	}
+	
+	// the value kept for an invariant node, as long as its operands are still the very same numbers
+	static Object recall(InvariantNode node, Frame frame) {
+		Object[] memo = (Object[]) frame.slots[node.slot];
+		if(memo == null) return null;
+		for(int i = 0; i < node.leaves.length; i++)
+			if(memo[i] != frame.slots[node.leaves[i]]) return null;
+		return memo[node.leaves.length];
+	}
 	
-	private Object visitPointAccessNode(PointAccessNode node, Context context) {
+	// only numbers are kept: any other operand could run an overloaded operator that has to be called every time
+	static void memorize(InvariantNode node, Frame frame, Object value) {
+		if(!(value instanceof Number)) return;
+		for(int leaf:node.leaves)
+			if(!(frame.slots[leaf] instanceof Number) || frame.slots[leaf] == Number.NULL) return;
+		Object[] memo = new Object[node.leaves.length+1];
+		for(int i = 0; i < node.leaves.length; i++) memo[i] = frame.slots[node.leaves[i]];
+		memo[node.leaves.length] = value;
+		frame.slots[node.slot] = memo;
+	}
+	
+	Object visitContinueNode(ContinueNode node, Context context) { return CONTINUE; }
+	Object visitBreakNode(BreakNode node, Context context) { return BREAK; }
+	
+	Object visitPointAccessNode(PointAccessNode node, Context context) {
 		RTResult res = new RTResult();
 		Object currentReturn = Number.NULL;
 		Context currentContext = context;
@@ -1156,7 +2073,7 @@ public class Interpreter {
 		return res.success(currentReturn);
 	}
 	
-	private Object visitObjectDefNode(ObjectDefNode node, Context context) {
+	Object visitObjectDefNode(ObjectDefNode node, Context context) {
 		RTResult res = new RTResult();
 		
 		String[] args_name = new String[node.args.length];
@@ -1168,13 +2085,23 @@ public class Interpreter {
 			superClass = res.register(visit(node.superClass, context));
 		if(res.shouldReturn())
 			return res;
-		ObjectClass oc = new ObjectClass((String) node.name.value, args_name, node.body, superClass);//node.superClass==null?null:context.get(node.superClass.value.toString()));
+		Function[] methods = new Function[node.methods.length];
+		for(int i = 0; i < methods.length; i++) {
+			FunctionDefNode def = node.methods[i];
+			String[] method_args = new String[def.args.length];
+			for(int j = 0; j < method_args.length; j++) method_args[j] = (String) def.args[j].value;
+			methods[i] = new Function((String) def.name.value, def.body, method_args, def.shouldAutoReturn).setFrame(def.frameSize, null).setProfile(def.profile);
+			methods[i].setOrigin(def.name);
+		}
+		
+		ObjectClass oc = new ObjectClass((String) node.name.value, args_name, node.statements, superClass).setMethods(methods);//node.superClass==null?null:context.get(node.superClass.value.toString()));
+		oc.shape = node.shape(superClass);
 		context.set((String) node.name.value, oc);
 		
 		return res.success(oc);
 	}
 	
-	private Object visitInstantiateNode(InstantiateNode node, Context context) {
+	Object visitInstantiateNode(InstantiateNode node, Context context) {
 		RTResult res = new RTResult();
 		Object cl = res.register(visit(node.nodeToCall, context));
 		if(res.shouldReturn()) return res;
@@ -1198,7 +2125,7 @@ public class Interpreter {
 		} else return res.failure(new Error.RuntimeError(((VarAccessNode)node.nodeToCall).name.getValue() + " is not an object.", null));
 	}
 	
-	private Object visitIncludeNode(IncludeNode node, Context context) {
+	Object visitIncludeNode(IncludeNode node, Context context) {
 		if(node.toInclude.length == 1)
 			return singleInclude(node.toInclude[0], context);
 		
@@ -9,10 +9,12 @@ import java.util.Scanner;
 
 import ch.holo.jipl.Interpreter.RTResult;
 import ch.holo.jipl.Parser.ParseResult;
+import ch.holo.jipl.ScriptCache.Script;
 
 public class JIPL {
 	
-	public static boolean debug = false, performance = false;
+	public static boolean debug = false, performance = false, bytecode = false, jit = true, optimize = true, cache = true, segments = false;
+	public static final ScriptCache scripts = new ScriptCache(512, 1 << 22);
 	public static boolean stop = false;
 	
 	public static void stop() { stop = true; }
@@ -67,21 +69,15 @@ public class JIPL {
 		
 		if(debug) System.out.println("Running " + lines);
 		
-		ArrayList<Token> tokens = Lexer.getTokens(lines, file);
-		if(debug) for(Token t:tokens) System.out.println("Lexer: "+t);
-		
-		ParseResult pr = (ParseResult) new Parser(tokens).parse();
+		Script script = script(lines, file, context);
+		if(script == null) return context;
 		
-		if(pr.error != null) {
-			pr.error.call();
-			return context;
-		}
 		Interpreter in = new Interpreter();
 		context.file = file;
 		
 		long m1 = System.currentTimeMillis();
 		
-		RTResult output = (RTResult) in.visit(pr.node, context);
+		RTResult output = (RTResult) execute(in, script, context);
 		if(output.error != null) {
 			output.error.call();
 			return context;
@@ -94,17 +90,56 @@ public class JIPL {
 		return context;
 	}
 	
+	// the tree to run for the code, taken from the cache when it was parsed before, null when it has a syntax error
+	private static Script script(String lines, String file, Context context) {
+		Script script = cache?scripts.get(lines, file):null;
+		if(script != null) return script;
+		
+		long p1 = System.nanoTime();
+		ParseResult pr = (ParseResult) parser(lines, file).parse();
+		if(performance) {
+			long nanos = System.nanoTime()-p1;
+			System.out.println("lexed and parsed " + lines.length() + " chars in " + nanos/1000000 + " millis (" + String.format("%.2f", lines.length()*1000d/nanos) + " MB/s).");
+		}
+		
+		if(pr.error != null) {
+			pr.error.call();
+			return null;
+		}
+		
+		// a cached tree can be run against other contexts later, so its native calls are not folded with the functions of this one
+		script = new Script(optimize?Optimizer.optimize(pr.node, cache?null:context):pr.node);
+		if(cache) scripts.put(lines, file, script);
+		return script;
+	}
+	
+	// calls the vm can not keep off the Java stack, a native calling back into a function for instance, may still overflow it
+	private static Object execute(Interpreter in, Script script, Context context) {
+		try {
+			if(!bytecode) return in.visit(script.node, context);
+			Bytecode code = script.getCode();
+			if(debug) System.out.println("Bytecode:\n" + code);
+			return new VM().run(code, context);
+		} catch(StackOverflowError e) {
+			return new RTResult().failure(new Error.RuntimeError("Stack Overflow", "Too many nested calls", null));
+		}
+	}
+	
 	public static ParseResult getParseResult(String lines, String file) {
 		stop = false;
 		if(lines.isEmpty()) return new ParseResult();
 		
 		if(debug) System.out.println("Running " + lines);
 		
+		return (ParseResult) parser(lines, file).parse();
+	}
+	
+	// the parser pulls the tokens from the lexer as it goes, unless they are all printed first
+	private static Parser parser(String lines, String file) {
+		if(!debug) return new Parser(new Lexer(lines, file));
 		ArrayList<Token> tokens = Lexer.getTokens(lines, file);
-		if(debug) for(Token t:tokens) System.out.println("Lexer: "+t);
-		
-		ParseResult pr = (ParseResult) new Parser(tokens).parse();
-		return pr;
+		for(Token t:tokens) System.out.println("Lexer: "+t);
+		return new Parser(tokens);
 	}
 	
 	public static Context runAnonymously(String lines, Context context) {
@@ -113,20 +148,14 @@ public class JIPL {
 		
 		if(debug) System.out.println("Running " + lines);
 		
-		ArrayList<Token> tokens = Lexer.getTokens(lines, null);
-		if(debug) for(Token t:tokens) System.out.println("Lexer: "+t);
-		
-		ParseResult pr = (ParseResult) new Parser(tokens).parse();
-		
-		if(pr.error != null) {
-			pr.error.call();
-			return context;
-		}
+		// lines typed one after the other may rebind any global, so none of them is folded
+		Script script = script(lines, null, null);
+		if(script == null) return context;
 		
 		Interpreter in = new Interpreter();
 		context.file = "";
 		
-		RTResult output = (RTResult) in.visit(pr.node, context);
+		RTResult output = (RTResult) execute(in, script, context);
 		if(output.error != null) output.error.call();
 		
 		return context;
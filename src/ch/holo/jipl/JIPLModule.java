@@ -15,6 +15,7 @@ import ch.holo.jipl.Interpreter.BuildInFunction;
 import ch.holo.jipl.Interpreter.BuildInObjectClass;
 import ch.holo.jipl.Interpreter.Function;
 import ch.holo.jipl.Interpreter.List;
+import ch.holo.jipl.Interpreter.NativeFunction;
 import ch.holo.jipl.Interpreter.Number;
 import ch.holo.jipl.Interpreter.RTResult;
 import ch.holo.jipl.Interpreter.StringValue;
@@ -24,9 +25,9 @@ public abstract class JIPLModule {
 	
 	public static final JIPLModule BUILT_IN_FUNCTIONS = new JIPLModule() {
 		public Context generate(Context con, Object... data) {
-			con.set("print", new BuildInFunction("print", "text") {
+			con.set("print", new NativeFunction("print", "text") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					System.out.println(""+args[0]);
 					return res.success(Number.NULL);
 				}
@@ -51,13 +52,13 @@ public abstract class JIPLModule {
 				}
 			});
 			
-			con.set("wait", new BuildInFunction("wait", "value") {
+			con.set("wait", new NativeFunction("wait", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					if(args[0] instanceof Number) {
 						try { Thread.sleep((long) ((Number)args[0]).value);
 						} catch (InterruptedException e) { e.printStackTrace(); }
-					} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", getSeq()));
 					return res.success(Number.NULL);
 				}
 			});
@@ -70,15 +71,15 @@ public abstract class JIPLModule {
 				}
 			});
 			
-			con.set("async", new BuildInFunction("async", "fun") {
+			con.set("async", new NativeFunction("async", "fun") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					if(args[0] instanceof Function) {
 						new Thread(() -> {
 							args[0].execute();
 						}).start();
 						return res.success(Number.NULL);
-					} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+					} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", getSeq()));
 				}
 			});
 			
@@ -98,185 +99,185 @@ public abstract class JIPLModule {
 			con.set("PI", new Number(3.1415927f));
 			con.set("PHI", new Number(1.618034f));
 			
-			con.set("sin", new BuildInFunction("sin", "value") {
+			con.set("sin", new NativeFunction("sin", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.sin(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.sin(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("cos", new BuildInFunction("cos", "value") {
+			con.set("cos", new NativeFunction("cos", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.cos(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.cos(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("atan2", new BuildInFunction("atan2", "y", "x") {
+			con.set("atan2", new NativeFunction("atan2", "y", "x") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					res.register(checkArgumentTypes(res, args, Number.class, Number.class));
 					if(res.shouldReturn()) return res;
 					
-					return res.success(new Number(Math.atan2(context.number("y"), context.number("x"))));
+					return res.success(Number.of(Math.atan2(((Number) args[0]).value, ((Number) args[1]).value)));
 				}
-			});
+			}.pure());
 			
-			con.set("min", new BuildInFunction("min", "a", "b") {
+			con.set("min", new NativeFunction("min", "a", "b") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					if(args[0] instanceof Number && args[1] instanceof Number)
-						return res.success(new Number(Math.min(((Number)args[0]).value, ((Number)args[1]).value)));
+						return res.success(Number.of(Math.min(((Number)args[0]).value, ((Number)args[1]).value)));
 					
 					if(!(args[0] instanceof Number))
-						return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+						return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 					
-					return res.failure(new IllegalArgumentError(name, args[1], args[1].seq));
+					return res.failure(new IllegalArgumentError(name, args[1], args[1].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("max", new BuildInFunction("max", "a", "b") {
+			con.set("max", new NativeFunction("max", "a", "b") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					if(args[0] instanceof Number && args[1] instanceof Number)
-						return res.success(new Number(Math.max(((Number)args[0]).value, ((Number)args[1]).value)));
+						return res.success(Number.of(Math.max(((Number)args[0]).value, ((Number)args[1]).value)));
 					
 					if(!(args[0] instanceof Number))
-						return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+						return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 					
-					return res.failure(new IllegalArgumentError(name, args[1], args[1].seq));
+					return res.failure(new IllegalArgumentError(name, args[1], args[1].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("clamp", new BuildInFunction("clamp", "value", "min", "max") {
+			con.set("clamp", new NativeFunction("clamp", "value", "min", "max") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					res.register(checkArgumentTypes(res, args, Number.class, Number.class, Number.class));
 					if(res.shouldReturn()) return res;
-					return res.success(new Number(Math.max(context.number("min"), Math.min(context.number("max"), context.number("value")))));
+					return res.success(Number.of(Math.max(((Number) args[1]).value, Math.min(((Number) args[2]).value, ((Number) args[0]).value))));
 				}
-			});
+			}.pure());
 			
-			con.set("map", new BuildInFunction("map", "value", "rmin", "rmax", "nmin", "nmax") {
+			con.set("map", new NativeFunction("map", "value", "rmin", "rmax", "nmin", "nmax") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					res.register(checkArgumentTypes(res, args, Number.class, Number.class, Number.class, Number.class, Number.class));
 					if(res.shouldReturn()) return res;
 					
-					return res.success(new Number(context.number("nmin")+((Math.abs(context.number("rmin"))+context.number("value"))/(Math.abs(context.number("rmin"))+Math.abs(context.number("rmax"))))*(context.number("nmax")-context.number("nmin"))));
+					return res.success(Number.of(((Number) args[3]).value+((Math.abs(((Number) args[1]).value)+((Number) args[0]).value)/(Math.abs(((Number) args[1]).value)+Math.abs(((Number) args[2]).value)))*(((Number) args[4]).value-((Number) args[3]).value)));
 				}
-			});
+			}.pure());
 			
-			con.set("signum", new BuildInFunction("signum", "value") {
+			con.set("signum", new NativeFunction("signum", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.signum(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.signum(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("abs", new BuildInFunction("abs", "value") {
+			con.set("abs", new NativeFunction("abs", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.abs(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.abs(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("floor", new BuildInFunction("floor", "value") {
+			con.set("floor", new NativeFunction("floor", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.floor(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.floor(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("ceil", new BuildInFunction("ceil", "value") {
+			con.set("ceil", new NativeFunction("ceil", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.ceil(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.ceil(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("toRadians", new BuildInFunction("toRadians", "value") {
+			con.set("toRadians", new NativeFunction("toRadians", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.toRadians(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.toRadians(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("toDegrees", new BuildInFunction("toDegrees", "value") {
+			con.set("toDegrees", new NativeFunction("toDegrees", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.toDegrees(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.toDegrees(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("random", new BuildInFunction("random") {
+			con.set("random", new NativeFunction("random") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					return res.success(new Number((float)Math.random()));
+				protected Object executeNative(RTResult res, Value... args) {
+					return res.success(Number.of(Math.random()));
 				}
 			});
 			
-			con.set("randomBetween", new BuildInFunction("randomBetween", "min", "max") {
+			con.set("randomBetween", new NativeFunction("randomBetween", "min", "max") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					
 					float[] values = new float[2];
 					for(int i = 0; i < values.length; i++)
 						if(args[i] instanceof Number) values[i] = ((Number) args[i]).value;
-						else return res.failure(new IllegalArgumentError(name, args[i], args[i].seq));
+						else return res.failure(new IllegalArgumentError(name, args[i], args[i].getSeq()));
 					
 					float bnd = values[1]-values[0];
-					if(bnd < 0) return res.success(new Number(0f));
+					if(bnd < 0) return res.success(Number.of(0));
 					
-					return res.success(new Number(values[0]+new Random().nextInt((int)bnd+1)));
+					return res.success(Number.of(values[0]+new Random().nextInt((int)bnd+1)));
 				}
 			});
 			
-			con.set("sqrt", new BuildInFunction("sqrt", "value") {
+			con.set("sqrt", new NativeFunction("sqrt", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.sqrt(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.sqrt(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("exp", new BuildInFunction("exp", "value") {
+			con.set("exp", new NativeFunction("exp", "value") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
-					if(args[0] instanceof Number) return res.success(new Number((float)Math.exp(((Number) args[0]).value)));
-					return res.failure(new IllegalArgumentError(name, args[0], args[0].seq));
+				protected Object executeNative(RTResult res, Value... args) {
+					if(args[0] instanceof Number) return res.success(Number.of(Math.exp(((Number) args[0]).value)));
+					return res.failure(new IllegalArgumentError(name, args[0], args[0].getSeq()));
 				}
-			});
+			}.pure());
 			
-			con.set("distance", new BuildInFunction("distance", "x1", "y1", "x2", "y2") {
+			con.set("distance", new NativeFunction("distance", "x1", "y1", "x2", "y2") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					float[] values = new float[4];
 					for(int i = 0; i < values.length; i++)
 						if(args[i] instanceof Number) values[i] = ((Number) args[i]).value;
-						else return res.failure(new IllegalArgumentError(name, args[i], args[i].seq));
-					return res.success(new Number((float)Math.sqrt((values[0]-values[2])*(values[0]-values[2])+(values[1]-values[3])*(values[1]-values[3]))));
+						else return res.failure(new IllegalArgumentError(name, args[i], args[i].getSeq()));
+					return res.success(Number.of(Math.sqrt((values[0]-values[2])*(values[0]-values[2])+(values[1]-values[3])*(values[1]-values[3]))));
 				}
-			});
+			}.pure());
 			
-			con.set("modulo", new BuildInFunction("modulo", "value", "diviser") {
+			con.set("modulo", new NativeFunction("modulo", "value", "diviser") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					float[] values = new float[2];
 					for(int i = 0; i < values.length; i++)
 						if(args[i] instanceof Number) values[i] = ((Number) args[i]).value;
-						else return res.failure(new IllegalArgumentError(name, args[i], args[i].seq));
-					return res.success(new Number(values[0]%values[1]));
+						else return res.failure(new IllegalArgumentError(name, args[i], args[i].getSeq()));
+					return res.success(Number.of(values[0]%values[1]));
 				}
-			});
+			}.pure());
 			
 			return con;
 		}
@@ -292,9 +293,9 @@ public abstract class JIPLModule {
 					
 					st.set("path", new StringValue(f.getPath()));
 					
-					st.set("createNewFile", new BuildInFunction("createNewFile") {
+					st.set("createNewFile", new NativeFunction("createNewFile") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							try {
 								f.createNewFile();
 								return res.success(Number.TRUE);
@@ -302,39 +303,39 @@ public abstract class JIPLModule {
 						}
 					});
 					
-					st.set("mkdir", new BuildInFunction("mkdir") {
+					st.set("mkdir", new NativeFunction("mkdir") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							f.mkdir();
 							return res.success(Number.NULL);
 						}
 					});
 					
-					st.set("mkdirs", new BuildInFunction("mkdirs") {
+					st.set("mkdirs", new NativeFunction("mkdirs") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							f.mkdirs();
 							return res.success(Number.NULL);
 						}
 					});
 					
-					st.set("exists", new BuildInFunction("exists") {
+					st.set("exists", new NativeFunction("exists") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							return res.success(f.exists()?Number.TRUE:Number.FALSE);
 						}
 					});
 					
-					st.set("isDirectory", new BuildInFunction("isDirectory") {
+					st.set("isDirectory", new NativeFunction("isDirectory") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							return res.success(f.isDirectory()?Number.TRUE:Number.FALSE);
 						}
 					});
 					
-					st.set("list", new BuildInFunction("list") {
+					st.set("list", new NativeFunction("list") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							ArrayList<Object> elements = new ArrayList<>();
 							for(String s:f.list())
 								elements.add(new StringValue(s));
@@ -342,9 +343,9 @@ public abstract class JIPLModule {
 						}
 					});
 					
-					st.set("listFiles", new BuildInFunction("listFiles") {
+					st.set("listFiles", new NativeFunction("listFiles") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							ArrayList<Object> elements = new ArrayList<>();
 							for(File s:f.listFiles())
 								elements.add(new StringValue(""+s));
@@ -352,9 +353,9 @@ public abstract class JIPLModule {
 						}
 					});
 					
-					st.set("readAllLines", new BuildInFunction("readAllLines") {
+					st.set("readAllLines", new NativeFunction("readAllLines") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							try {
 								BufferedReader br = new BufferedReader(new FileReader(f));
 								ArrayList<Object> array = new ArrayList<Object>();
@@ -370,9 +371,9 @@ public abstract class JIPLModule {
 						}
 					});
 					
-					st.set("writeLines", new BuildInFunction("writeLines", "lines") {
+					st.set("writeLines", new NativeFunction("writeLines", "lines") {
 						private static final long serialVersionUID = 1L;
-						protected Object executeFunction(Context context, RTResult res, Value... args) {
+						protected Object executeNative(RTResult res, Value... args) {
 							try {
 								if(args[0] instanceof List) {
 									BufferedWriter bw = new BufferedWriter(new FileWriter(f));
@@ -386,7 +387,7 @@ public abstract class JIPLModule {
 									
 									bw.flush();
 									bw.close();
-								} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", seq));
+								} else return res.failure(new Error.RuntimeError("Invalid argument type, "+args[0]+" is not allowed to the function '"+name+"'", getSeq()));
 
 								return res.success(Number.TRUE);
 							} catch (IOException e) { return res.success(Number.FALSE); }
@@ -405,19 +406,19 @@ public abstract class JIPLModule {
 		public Context generate(Context con, Object... data) {
 			@SuppressWarnings("resource")
 			Scanner globalScanner = new Scanner(System.in);
-			con.set("readString", new BuildInFunction("readString") {
+			con.set("readString", new NativeFunction("readString") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					System.out.print("> ");
 					return res.success(new StringValue(globalScanner.nextLine()));
 				}
 			});
-			con.set("readNumber", new BuildInFunction("readNumber") {
+			con.set("readNumber", new NativeFunction("readNumber") {
 				private static final long serialVersionUID = 1L;
-				protected Object executeFunction(Context context, RTResult res, Value... args) {
+				protected Object executeNative(RTResult res, Value... args) {
 					System.out.print("> ");
 					
-					return res.success(new Number(globalScanner.nextInt()));
+					return res.success(Number.of(globalScanner.nextInt()));
 				}
 			});
 			return con;
@@ -0,0 +1,541 @@
+package ch.holo.jipl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.holo.jipl.Interpreter.Function;
+import ch.holo.jipl.Interpreter.Number;
+import ch.holo.jipl.Interpreter.RTResult;
+import ch.holo.jipl.Interpreter.Value;
+import ch.holo.jipl.Parser.BinaryOperation;
+import ch.holo.jipl.Parser.BreakNode;
+import ch.holo.jipl.Parser.CaseDataNode;
+import ch.holo.jipl.Parser.ContinueNode;
+import ch.holo.jipl.Parser.ForNode;
+import ch.holo.jipl.Parser.IfNode;
+import ch.holo.jipl.Parser.InvariantNode;
+import ch.holo.jipl.Parser.NumberNode;
+import ch.holo.jipl.Parser.ReturnNode;
+import ch.holo.jipl.Parser.StatementsNode;
+import ch.holo.jipl.Parser.UnaryOperation;
+import ch.holo.jipl.Parser.VarAccessNode;
+import ch.holo.jipl.Parser.VarAddNode;
+import ch.holo.jipl.Parser.VarAssignNode;
+import ch.holo.jipl.Parser.VarDivNode;
+import ch.holo.jipl.Parser.VarModifyNode;
+import ch.holo.jipl.Parser.VarMultNode;
+import ch.holo.jipl.Parser.VarSubNode;
+import ch.holo.jipl.Parser.WhileNode;
+import ch.holo.jipl.Token.TokenType;
+
+/**
+ * Second tier for hot {@link Function}s: numeric bodies whose locals all live in the frame are turned into a JVM class
+ * and defined as a hidden class, so HotSpot can inline the arithmetic.
+ * The generated code has no side effects outside its own locals: whenever it meets something it does not handle
+ * (a division by zero, an undefined local, a non numeric argument, a stop request) it returns null and
+ * the call is simply run again by the tree walker.
+ */
+public class JIT {
+
+	public static final int THRESHOLD = 16;
+
+	public static abstract class Compiled {
+		protected Object[] constants;
+
+		public abstract Object run(Value[] args, RTResult res);
+	}
+
+	/**
+	 * The calls counted towards the threshold and the class compiled for one definition, shared by every {@link Function} built from it,
+	 * the copies bound to each instance and the closures made on each run included, so a definition is compiled at most once.
+	 */
+	public static class Profile {
+		// a race only loses a count, -1 once the body turned out not to compile
+		private int calls;
+		// its constants are set once it is built, volatile so a thread calling the function at the same time never sees it without them
+		protected volatile Compiled compiled;
+
+		// counts the call, true when the definition just got hot enough to be compiled
+		protected boolean hot() { return calls >= 0 && ++calls >= THRESHOLD; }
+
+		// compiles the definition unless another thread just did
+		protected synchronized Compiled compiled(Function function) {
+			if(compiled == null && calls >= 0) {
+				compiled = compile(function);
+				if(compiled == null) calls = -1;
+			}
+			return compiled;
+		}
+
+		public int getCalls() { return calls; }
+		public Compiled getCompiled() { return compiled; }
+	}
+
+	private static final Lookup LOOKUP = MethodHandles.lookup();
+	// the classes defined so far, functions on several threads may be compiled at once
+	static final AtomicInteger count = new AtomicInteger();
+
+	private static final String OBJECT = "java/lang/Object", VALUE = "ch/holo/jipl/Interpreter$Value", NUMBER = "ch/holo/jipl/Interpreter$Number",
+			RTRESULT = "ch/holo/jipl/Interpreter$RTResult", COMPILED = "ch/holo/jipl/JIT$Compiled", JIT = "ch/holo/jipl/JIT";
+	private static final String BINARY = "(Ljava/lang/Object;)Ljava/lang/Object;";
+
+	public static Compiled compile(Function function) {
+		if(function.frameSize < 0) return null;
+		try {
+			JIT jit = new JIT(function.args_name.length, function.frameSize);
+			byte[] bytes = jit.generate(function.body_node, function.shouldAutoReturn);
+			Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+			Compiled compiled = (Compiled) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+			compiled.constants = jit.constants.toArray();
+			if(JIPL.debug) System.out.println("JIT: Compiled " + function);
+			return compiled;
+		} catch(Unsupported e) {
+			if(JIPL.debug) System.out.println("JIT: Cannot compile " + function + ", " + e.getMessage());
+		} catch(Throwable e) {
+			if(JIPL.debug) e.printStackTrace();
+		}
+		return null;
+	}
+
+	public static Object defaultStep(Object start, Object end) { return ((Number) start).less((Number) end)?Number.of(1):Interpreter.MINUS_ONE; }
+
+	public static boolean forTest(Object i, Object end, Object step) {
+		return ((Number) step).value >= 0?((Number) i).less((Number) end):((Number) end).less((Number) i);
+	}
+
+	public static Object forStep(Object i, Object step) { return ((Number) i).plus((Number) step); }
+
+	private static class Unsupported extends Exception {
+		private static final long serialVersionUID = 1L;
+		public Unsupported(Object node) { super("unsupported " + node); }
+	}
+
+	private static class Loop {
+		protected ArrayList<Integer> breaks = new ArrayList<Integer>(), continues = new ArrayList<Integer>();
+	}
+
+	private static final int ASSOC = 3, SLOTS = 4;
+
+	private ArrayList<Object> constants = new ArrayList<Object>();
+	private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+	private int poolSize = 1;
+
+	private byte[] code = new byte[256];
+	private int length, depth, maxDepth, locals, maxLocals;
+	private int params, slots;
+	private boolean autoReturn;
+	private ArrayList<Loop> loops = new ArrayList<Loop>();
+
+	private JIT(int params, int slots) {
+		this.params = params;
+		this.slots = slots;
+		this.locals = this.maxLocals = SLOTS+slots;
+	}
+
+	private byte[] generate(Object body, boolean autoReturn) throws Unsupported, IOException {
+		this.autoReturn = autoReturn;
+		for(int i = 0; i < slots; i++) {
+			if(i < params) {
+				aload(1); iconst(i); op(0x32, -1); 											// aaload
+				op(0x59, 1); typeCheck(NUMBER, 0x9a); 										// dup, instanceof, ifne
+			} else op(0x01, 1); 															// aconst_null
+			astore(SLOTS+i);
+		}
+		op(0x01, 1); astore(ASSOC);
+
+		if(autoReturn) {
+			compile(body, true);
+			returnValue();
+		} else {
+			compile(body, false);
+			op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); 						// getstatic
+			returnValue();
+		}
+
+		if(maxLocals > 255 || length > Short.MAX_VALUE) throw new Unsupported(body);
+
+		String name = "ch/holo/jipl/JIT$Function" + count.getAndIncrement();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		int thisClass = classRef(name), superClass = classRef(COMPILED);
+		int init = utf8("<init>"), initDesc = utf8("()V"), superInit = method(COMPILED, "<init>", "()V", false);
+		int run = utf8("run"), runDesc = utf8("([L"+VALUE+";L"+RTRESULT+";)Ljava/lang/Object;"), codeName = utf8("Code");
+
+		data.writeInt(0xCAFEBABE);
+		data.writeShort(0);
+		data.writeShort(49);
+		data.writeShort(poolSize);
+		data.write(pool.toByteArray());
+		data.writeShort(0x0030);
+		data.writeShort(thisClass);
+		data.writeShort(superClass);
+		data.writeShort(0);
+		data.writeShort(0);
+		data.writeShort(2);
+
+		data.writeShort(0x0001); data.writeShort(init); data.writeShort(initDesc); data.writeShort(1);
+		data.writeShort(codeName); data.writeInt(12+5); data.writeShort(1); data.writeShort(1); data.writeInt(5);
+		data.writeByte(0x2a); data.writeByte(0xb7); data.writeShort(superInit); data.writeByte(0xb1);
+		data.writeShort(0); data.writeShort(0);
+
+		data.writeShort(0x0001); data.writeShort(run); data.writeShort(runDesc); data.writeShort(1);
+		data.writeShort(codeName); data.writeInt(12+length); data.writeShort(maxDepth); data.writeShort(maxLocals); data.writeInt(length);
+		data.write(code, 0, length);
+		data.writeShort(0); data.writeShort(0);
+
+		data.writeShort(0);
+		return out.toByteArray();
+	}
+
+	private void compile(Object node, boolean value) throws Unsupported {
+		// HotSpot hoists invariant code itself, the memo slot is left unused
+		if(node instanceof InvariantNode) node = ((InvariantNode) node).node;
+		if(node instanceof NumberNode) {
+			NumberNode n = (NumberNode) node;
+			constant(n.value);
+			op(0x01, 1); astore(ASSOC);
+			discard(value);
+		} else if(node instanceof VarAccessNode) {
+			VarAccessNode n = (VarAccessNode) node;
+			if(n.slot < 0 || n.depth != 0) throw new Unsupported(node);
+			aload(SLOTS+n.slot);
+			op(0x59, 1); bailIf(0xc6); 														// dup, ifnull
+			op(0x59, 1); op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); bailIf(0xa5); // dup, getstatic, if_acmpeq
+			constant(n.name); astore(ASSOC);
+			discard(value);
+		} else if(node instanceof VarAssignNode) {
+			VarAssignNode n = (VarAssignNode) node;
+			assign(n.expression, n.depth, n.slot, value);
+		} else if(node instanceof VarModifyNode) {
+			VarModifyNode n = (VarModifyNode) node;
+			assign(n.node, n.depth, n.slot, value);
+		} else if(node instanceof VarAddNode) {
+			VarAddNode n = (VarAddNode) node;
+			compound("add", n.node, n.depth, n.slot, value);
+		} else if(node instanceof VarSubNode) {
+			VarSubNode n = (VarSubNode) node;
+			compound("sub", n.node, n.depth, n.slot, value);
+		} else if(node instanceof VarMultNode) {
+			VarMultNode n = (VarMultNode) node;
+			compound("mult", n.node, n.depth, n.slot, value);
+		} else if(node instanceof VarDivNode) {
+			VarDivNode n = (VarDivNode) node;
+			compound("div", n.node, n.depth, n.slot, value);
+		} else if(node instanceof BinaryOperation) {
+			BinaryOperation n = (BinaryOperation) node;
+			String operation = operation(n);
+			int saved = enter();
+			compile(n.leftNode, true);
+			checkcast(VALUE);
+			int skip = -1;
+			if(n.isLogical()) {
+				op(0x59, 1); iconst(n.operator);
+				op(0xb8, -1); u2(method("ch/holo/jipl/Interpreter", "shortCircuit", "(Ljava/lang/Object;I)Ljava/lang/Object;", false));
+				op(0x59, 1);
+				int evaluate = jump(0xc6); 													// ifnull
+				op(0x5f, 0); op(0x57, -1); 													// swap, pop
+				skip = jump(0xa7);
+				patch(evaluate);
+				depth++;
+				op(0x57, -1);
+			}
+			compile(n.rightNode, true);
+			op(0xb6, -1); u2(method(VALUE, operation, BINARY, false));						// invokevirtual
+			if(operation.equals("div")) {
+				op(0x59, 1); typeCheck(NUMBER, 0x9a);
+			}
+			if(skip >= 0) patch(skip);
+			leave(saved, true);
+			discard(value);
+		} else if(node instanceof UnaryOperation) {
+			UnaryOperation n = (UnaryOperation) node;
+			int saved = enter();
+			compile(n.node, true);
+			checkcast(NUMBER);
+			if(n.operationToken.matches(TokenType.MINUS)) {
+				op(0xb2, 1); u2(field("ch/holo/jipl/Interpreter", "MINUS_ONE", "L"+NUMBER+";"));
+				op(0xb6, -1); u2(method(VALUE, "mult", BINARY, false));
+			} else if(n.operationToken.matches("not", TokenType.KEYWORD)) {
+				op(0xb6, 0); u2(method(VALUE, "_not", "()Ljava/lang/Object;", false));
+			}
+			leave(saved, false);
+			discard(value);
+		} else if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			ArrayList<Integer> exits = new ArrayList<Integer>();
+			int saved = enter();
+			for(CaseDataNode cdn:n.cases) {
+				compile(cdn.condition, true);
+				condition();
+				int next = jump(0x99); 														// ifeq
+				branch(cdn, value);
+				exits.add(jump(0xa7)); 														// goto
+				if(value) depth--;
+				patch(next);
+			}
+			if(n.else_case != null) branch(n.else_case, value);
+			else if(value) { op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); }
+			for(int exit:exits) patch(exit);
+			leave(saved, false);
+		} else if(node instanceof WhileNode) {
+			WhileNode n = (WhileNode) node;
+			if(value && !n.shouldReturnNull) throw new Unsupported(node);
+			int saved = enter();
+			Loop loop = new Loop();
+			int start = length;
+			compile(n.condition, true);
+			condition();
+			int exit = jump(0x99);
+			loops.add(loop);
+			compile(n.body, false);
+			loops.remove(loop);
+			for(int c:loop.continues) patch(c);
+			backEdge(start);
+			patch(exit);
+			for(int b:loop.breaks) patch(b);
+			leave(saved, false);
+			if(value) { op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); }
+		} else if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			if((value && !n.shouldReturnNull) || n.slot < 0) throw new Unsupported(node);
+			int saved = enter();
+			int i = allocate(), end = allocate(), step = allocate();
+			compile(n.start, true); astore(i);
+			compile(n.end, true); astore(end);
+			if(n.step != null) compile(n.step, true);
+			else {
+				aload(i); aload(end);
+				op(0xb8, -1); u2(method(JIT, "defaultStep", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", false));
+			}
+			astore(step);
+			Loop loop = new Loop();
+			int start = length;
+			aload(i); aload(end); aload(step);
+			op(0xb8, -2); u2(method(JIT, "forTest", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)Z", false));
+			int exit = jump(0x99);
+			aload(i); astore(SLOTS+n.slot);
+			loops.add(loop);
+			compile(n.body, false);
+			loops.remove(loop);
+			for(int c:loop.continues) patch(c);
+			aload(i); aload(step);
+			op(0xb8, -1); u2(method(JIT, "forStep", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", false));
+			astore(i);
+			backEdge(start);
+			patch(exit);
+			for(int b:loop.breaks) patch(b);
+			locals -= 3;
+			leave(saved, false);
+			if(value) { op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); }
+		} else if(node instanceof StatementsNode) {
+			if(value) throw new Unsupported(node);
+			int saved = enter();
+			for(Object o:((StatementsNode) node).elementNodes)
+				compile(o, false);
+			leave(saved, false);
+		} else if(node instanceof ReturnNode) {
+			Object toReturn = ((ReturnNode) node).toReturn;
+			if(autoReturn || !isExpression(toReturn)) throw new Unsupported(node);
+			enter();
+			compile(toReturn, true);
+			returnValue();
+			locals--;
+			if(value) depth++;
+		} else if((node instanceof BreakNode || node instanceof ContinueNode) && !loops.isEmpty() && depth == 0) {
+			Loop loop = loops.get(loops.size()-1);
+			op(0x01, 1); astore(ASSOC);
+			if(node instanceof BreakNode) loop.breaks.add(jump(0xa7));
+			else loop.continues.add(jump(0xa7));
+			if(value) depth++;
+		} else throw new Unsupported(node);
+	}
+
+	private boolean isExpression(Object node) {
+		return !(node instanceof StatementsNode || node instanceof ReturnNode || node instanceof BreakNode || node instanceof ContinueNode || node == Number.NULL);
+	}
+
+	private void assign(Object expression, int depth, int slot, boolean value) throws Unsupported {
+		if(slot < 0 || depth != 0) throw new Unsupported(expression);
+		int saved = enter();
+		compile(expression, true);
+		if(value) op(0x59, 1);
+		astore(SLOTS+slot);
+		leave(saved, false);
+	}
+
+	private void compound(String operation, Object expression, int depth, int slot, boolean value) throws Unsupported {
+		if(slot < 0 || depth != 0) throw new Unsupported(expression);
+		int saved = enter();
+		compile(expression, true);
+		aload(SLOTS+slot);
+		op(0x59, 1); bailIf(0xc6);
+		checkcast(VALUE);
+		op(0x5f, 0); 																		// swap
+		op(0xb6, -1); u2(method(VALUE, operation, BINARY, false));
+		if(operation.equals("div")) {
+			op(0x59, 1); typeCheck(NUMBER, 0x9a);
+		}
+		if(value) op(0x59, 1);
+		astore(SLOTS+slot);
+		leave(saved, false);
+	}
+
+	private void branch(CaseDataNode cdn, boolean value) throws Unsupported {
+		if(value && !cdn.shouldReturnNull) compile(cdn.statements, true);
+		else {
+			compile(cdn.statements, false);
+			if(value) { op(0xb2, 1); u2(field(NUMBER, "NULL", "L"+NUMBER+";")); }
+		}
+	}
+
+	private static final String[] OPERATIONS = {"add", "sub", "mult", "div", "_equals", "_not_equals",
+			"_less", "_less_equals", "_greater", "_greater_equals", "_and", "_or"};
+
+	private static String operation(BinaryOperation node) throws Unsupported {
+		if(node.operator == BinaryOperation.NONE) throw new Unsupported(node.operationToken);
+		return OPERATIONS[node.operator];
+	}
+
+	// associated tokens are tracked like the VM does, one local per open node
+
+	private int enter() {
+		int saved = allocate();
+		aload(ASSOC); astore(saved);
+		op(0x01, 1); astore(ASSOC);
+		return saved;
+	}
+
+	private void leave(int saved, boolean keep) {
+		if(keep) { aload(saved); astore(ASSOC); }
+		locals--;
+	}
+
+	private int allocate() {
+		int local = locals++;
+		if(locals > maxLocals) maxLocals = locals;
+		return local;
+	}
+
+	private void discard(boolean value) { if(!value) op(0x57, -1); }
+
+	private void condition() {
+		checkcast(NUMBER);
+		op(0xb6, 0); u2(method(NUMBER, "isTrue", "()Z", false));
+	}
+
+	private void returnValue() {
+		aload(2); aload(ASSOC); checkcast("ch/holo/jipl/Token");
+		op(0xb5, -2); u2(field(RTRESULT, "associatedToken", "Lch/holo/jipl/Token;")); 	// putfield
+		op(0xb0, -1); 																		// areturn
+	}
+
+	private void backEdge(int target) {
+		op(0xb2, 1); u2(field("ch/holo/jipl/JIPL", "stop", "Z"));
+		bailIf(0x9a);
+		int at = length;
+		op(0xa7, 0); u2(target-at);
+	}
+
+	private void bailIf(int opcode) {
+		int skip = jump(opcode == 0xc6?0xc7:opcode == 0xa5?0xa6:opcode == 0x9a?0x99:0x9a);
+		int saved = depth;
+		op(0x01, 1); op(0xb0, -1);
+		depth = saved;
+		patch(skip);
+	}
+
+	private void typeCheck(String type, int okOpcode) {
+		op(0xc1, 0); u2(classRef(type)); 													// instanceof
+		bailIf(okOpcode == 0x9a?0x99:0x9a);
+		checkcast(type);
+	}
+
+	private void checkcast(String type) { op(0xc0, 0); u2(classRef(type)); }
+
+	private void constant(Object value) {
+		constants.add(value);
+		aload(0);
+		op(0xb4, 0); u2(field(COMPILED, "constants", "[Ljava/lang/Object;")); 			// getfield
+		iconst(constants.size()-1);
+		op(0x32, -1);
+	}
+
+	private void iconst(int value) {
+		if(value < 128) { op(0x10, 1); u1(value); }
+		else { op(0x11, 1); u2(value); }
+	}
+
+	private void aload(int local) { op(0x19, 1); u1(local); }
+	private void astore(int local) { op(0x3a, -1); u1(local); }
+
+	private int jump(int opcode) {
+		int at = length;
+		op(opcode, opcode == 0xa7?0:opcode == 0xa5 || opcode == 0xa6?-2:-1);
+		u2(0);
+		return at;
+	}
+
+	private void patch(int at) {
+		int offset = length-at;
+		code[at+1] = (byte) (offset >> 8);
+		code[at+2] = (byte) offset;
+	}
+
+	private void op(int opcode, int delta) {
+		u1(opcode);
+		depth += delta;
+		if(depth > maxDepth) maxDepth = depth;
+	}
+
+	private void u1(int value) {
+		if(length == code.length) code = Arrays.copyOf(code, length*2);
+		code[length++] = (byte) value;
+	}
+
+	private void u2(int value) { u1(value >> 8); u1(value); }
+
+	// constant pool
+
+	private int entry(String key, byte[] bytes) {
+		Integer index = poolIndex.get(key);
+		if(index != null) return index;
+		pool.write(bytes, 0, bytes.length);
+		poolIndex.put(key, poolSize);
+		return poolSize++;
+	}
+
+	private int utf8(String value) {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeByte(1);
+			data.writeUTF(value);
+			return entry("U"+value, out.toByteArray());
+		} catch(IOException e) { throw new RuntimeException(e); }
+	}
+
+	private int classRef(String name) { return ref("C"+name, 7, utf8(name)); }
+	private int nameAndType(String name, String type) { return ref("N"+name+type, 12, utf8(name), utf8(type)); }
+	private int field(String owner, String name, String type) { return ref("F"+owner+name+type, 9, classRef(owner), nameAndType(name, type)); }
+	private int method(String owner, String name, String type, boolean itf) { return ref("M"+owner+name+type, itf?11:10, classRef(owner), nameAndType(name, type)); }
+
+	private int ref(String key, int tag, int... indices) {
+		byte[] bytes = new byte[1+indices.length*2];
+		bytes[0] = (byte) tag;
+		for(int i = 0; i < indices.length; i++) {
+			bytes[1+i*2] = (byte) (indices[i] >> 8);
+			bytes[2+i*2] = (byte) indices[i];
+		}
+		return entry(key, bytes);
+	}
+
+}
\ No newline at end of file
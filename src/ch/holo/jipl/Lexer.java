@@ -2,11 +2,11 @@ package ch.holo.jipl;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 import ch.holo.jipl.Token.TokenType;
 
-public class Lexer {
+public class Lexer implements TokenStream {
 	
 	public static final String DIGITS = "0123456789";
 	public static final String LETTERS = "azertyuiopqsdfghjklmwxcvbnAZERTYUIOPQSDFGHJKLMWXCVBN"+"àèéçôîÀÈÉÇêÊ";
@@ -14,181 +14,282 @@ public class Lexer {
 	
 	public static final String[] KEYWORDS = {"var", "and", "or", "not", "true", "false", "null", "if", "elseif", "else", "for", "in", "to", "by", "while", "function", "return", "continue", "break", "new", "object", "extends", "this", "include"};
 	
+	// what a character starts, in the low bits, and what it may continue, in the high ones
+	private static final int ILLEGAL = 0, BLANK = 1, SINGLE = 2, SYMBOL = 3, DIGIT = 4, LETTER = 5, KIND = 0x0F, PART = 0x10, HEX = 0x20;
+	private static final byte[] CLASSES = new byte[1 << 16];
+	private static final TokenType[] SINGLES = new TokenType[128];
+	
+	// the text of the numbers below 100, written without a leading zero, shared by all the tokens that hold one
+	private static final String[] SMALL_INTS = new String[100];
+	
+	// the keywords are told apart by their first and last letters and their length alone
+	private static final String[] KEYWORD_TABLE = new String[64];
+	
+	static {
+		CLASSES[' '] = CLASSES['\t'] = BLANK;
+		for(char c:"\n;+-*/!=<>\"'#@&|".toCharArray()) CLASSES[c] = SYMBOL;
+		for(char c:DIGITS.toCharArray()) CLASSES[c] = DIGIT | PART;
+		for(char c:LETTERS.toCharArray()) CLASSES[c] = LETTER | PART;
+		for(char c:"_$".toCharArray()) CLASSES[c] |= PART;
+		for(char c:"0123456789abcdef".toCharArray()) CLASSES[c] |= HEX;
+		
+		Object[][] singles = { {'(', TokenType.LPAREN}, {')', TokenType.RPAREN}, {'[', TokenType.LSQUARE}, {']', TokenType.RSQUARE},
+				{'.', TokenType.POINT}, {'{', TokenType.LBRA}, {'}', TokenType.RBRA}, {'^', TokenType.POWER}, {':', TokenType.COLON}, {',', TokenType.COMMAS} };
+		for(Object[] single:singles) {
+			CLASSES[(char) single[0]] = SINGLE;
+			SINGLES[(char) single[0]] = (TokenType) single[1];
+		}
+		
+		for(int i = 0; i < SMALL_INTS.length; i++) SMALL_INTS[i] = String.valueOf(i);
+		
+		for(String keyword:KEYWORDS) KEYWORD_TABLE[keywordHash(keyword, 0, keyword.length())] = keyword;
+	}
+	
+	private static int keywordHash(String text, int index, int length) {
+		return (text.charAt(index)*3 + text.charAt(index+length-1)*37 + length) & 63;
+	}
+	
+	protected final String text;
+	private final int end;
+	protected final PositionTable positions;
+	protected int index;
+	private boolean ended;
+	private final Names names = new Names();
+	// where a string with escapes is put together, kept from one string to the next
+	private char[] buffer = new char[64];
+	
+	public Lexer(String text, String file) {
+		this.text = text;
+		this.end = text.length();
+		this.positions = new PositionTable(file != null?new File(file).getName():null);
+	}
+	
 	public static ArrayList<Token> getTokens(String text, String file) {
-		if(file != null)
-			file = new File(file).getName();
-		ArrayList<Token> list = new ArrayList<Token>();
-		char[] chars = text.toCharArray();
-		int line = 0;
-		for(int i = 0; i < chars.length; i++) {
-			char c = chars[i];
+		ArrayList<Token> list = new ArrayList<Token>(text.length()/4+16);
+		Lexer lexer = new Lexer(text, file);
+		for(Token t = lexer.next(); t != null; t = lexer.next())
+			list.add(t);
+		return list;
+	}
+	
+	public Token next() {
+		while(index < end) {
+			int i = index;
+			char c = text.charAt(i);
 			
-			if(c == ' ') continue;
-			else if(c == '\t') continue;
-			else if(c == '\n') { line++; list.add(new Token(TokenType.NLINE, new Sequence(line, i, 1, file))); }
-			else if(c == ';') list.add(new Token(TokenType.NLINE, new Sequence(line, i, 1, file)));
-			else if(c == '(') list.add(new Token(TokenType.LPAREN, new Sequence(line, i, 1, file)));
-			else if(c == ')') list.add(new Token(TokenType.RPAREN, new Sequence(line, i, 1, file)));
-			else if(c == '[') list.add(new Token(TokenType.LSQUARE, new Sequence(line, i, 1, file)));
-			else if(c == ']') list.add(new Token(TokenType.RSQUARE, new Sequence(line, i, 1, file)));
-			else if(c == '.') list.add(new Token(TokenType.POINT, new Sequence(line, i, 1, file)));
-			else if(c == '{') list.add(new Token(TokenType.LBRA, new Sequence(line, i, 1, file)));
-			else if(c == '}') list.add(new Token(TokenType.RBRA, new Sequence(line, i, 1, file)));
-			else if(c == '+') i = _unaryComp(chars, i, TokenType.PLUS_EQUAL, TokenType.DPLUS, TokenType.PLUS, line, file, list);
-			else if(c == '-') i = _unaryComp(chars, i, TokenType.MINUS_EQUAL, TokenType.DMINUS, TokenType.MINUS, line, file, list);
-			else if(c == '*') i = _unaryComp(chars, i, TokenType.MULT_EQUAL, TokenType.MULT, TokenType.MULT, line, file, list);
-			else if(c == '/') i = _unaryComp(chars, i, TokenType.DIV_EQUAL, TokenType.DIV, TokenType.DIV, line, file, list);
-			else if(c == '^') list.add(new Token(TokenType.POWER, new Sequence(line, i, 1, file)));
-			else if(c == ':') list.add(new Token(TokenType.COLON, new Sequence(line, i, 1, file)));
-			else if(c == ',') list.add(new Token(TokenType.COMMAS, new Sequence(line, i, 1, file)));
-			else if(c == '&') list.add(new Token(TokenType.KEYWORD, new Sequence(line, i, 1, file), "and"));
-			else if(c == '|') list.add(new Token(TokenType.KEYWORD, new Sequence(line, i, 1, file), "or"));
-			else if(c == '!') i = _not_equals(chars, i, line, file, list);
-			else if(c == '=') i = _comparator(chars, i, TokenType.DOUBLE_EQUALS, TokenType.EQUALS, line, file, list);
-			else if(c == '<') i = _comparator(chars, i, TokenType.LESS_EQUALS, TokenType.LESS, line, file, list);
-			else if(c == '>') i = _comparator(chars, i, TokenType.GREATER_EQUALS, TokenType.GREATER, line, file, list);
-			else if(c == '"')  i = _string(chars, i, line, '"', file, list);
-			else if(c == '\'') i = _string(chars, i, line, '\'', file, list);
-			else if(c == '#') i = _comment(chars, i, line, list);
-			else if(c == '@') i = _comment(chars, i, line, list);
-			else if(DIGITS.contains(c+"")) 	i = _number(chars, i, line, file, list);
-			else if(LETTERS.contains(c+"")) i = _identifier(chars, i, line, file, list);
-			else {
-				new Error.IllegalCharError(c+"", new Sequence(line, i, 1, file)).call();
-				return list;
+			switch(CLASSES[c] & KIND) {
+				case BLANK: index++; continue;
+				case SINGLE: index++; return new Token(SINGLES[c], positions, i, 1);
+				case DIGIT: return _number();
+				case LETTER: return _identifier();
+				case SYMBOL: break;
+				default:
+					new Error.IllegalCharError(c+"", positions.sequence(i, 1)).call();
+					index = end;
+					ended = true;
+					return null;
+			}
+			
+			index++;
+			switch(c) {
+				case '\n': positions.newline(i); return new Token(TokenType.NLINE, positions, i, 1);
+				case ';': return new Token(TokenType.NLINE, positions, i, 1);
+				case '+': return _unaryComp(TokenType.PLUS_EQUAL, TokenType.DPLUS, TokenType.PLUS);
+				case '-': return _unaryComp(TokenType.MINUS_EQUAL, TokenType.DMINUS, TokenType.MINUS);
+				case '*': return _unaryComp(TokenType.MULT_EQUAL, TokenType.MULT, TokenType.MULT);
+				case '/': return _unaryComp(TokenType.DIV_EQUAL, TokenType.DIV, TokenType.DIV);
+				case '&': return new Token(TokenType.KEYWORD, positions, i, 1, "and");
+				case '|': return new Token(TokenType.KEYWORD, positions, i, 1, "or");
+				case '!': return _not_equals();
+				case '=': return _comparator(TokenType.DOUBLE_EQUALS, TokenType.EQUALS);
+				case '<': return _comparator(TokenType.LESS_EQUALS, TokenType.LESS);
+				case '>': return _comparator(TokenType.GREATER_EQUALS, TokenType.GREATER);
+				case '"': case '\'': {
+					Token t = _string(c);
+					if(t != null) return t;
+					continue;
+				}
+				case '#': case '@': _comment(); continue;
 			}
 		}
-		list.add(new Token(TokenType.END_OF_CODE, new Sequence(line, text.length(), 0, file)));
-		return list;
+		if(ended) return null;
+		ended = true;
+		return new Token(TokenType.END_OF_CODE, positions, end, 0);
 	}
 	
-	private static int _comment(char[] chars, int i, int line, ArrayList<Token> list) {
-		while(true) {
-			i++;
-			if(i >= chars.length || chars[i] == '\n') break;
-		}
-		return i;
+	// the comment takes the newline ending it along
+	private void _comment() {
+		while(index < end && text.charAt(index) != '\n') index++;
+		index++;
 	}
 	
-	private static int _number(char[] chars, int index, int line, String file, ArrayList<Token> list) {
-		String str = "";
-		
-		if(chars.length-index > 2 && chars[index] == '0' && chars[index+1] == 'x') {
-			for(int i = index+2; i < index+8 + 2; i++) {
-				if("0123456789abcdef".contains(chars[i]+""))
-					str+=chars[i];
-				else {
-					list.add(new Token(TokenType.INT, new Sequence(line, index, str.length()+2, file), ((int) Long.parseLong(str, 16))+""));
-					return i-1;
-				}
-			}
-			list.add(new Token(TokenType.INT, new Sequence(line, index, str.length()+2, file), ((int) Long.parseLong(str, 16))+""));
-			return index+str.length()+1;
+	private Token _number() {
+		int start = index;
+		if(end-start > 2 && text.charAt(start) == '0' && text.charAt(start+1) == 'x') {
+			int i = start+2, limit = Math.min(start+10, end);
+			while(i < limit && (CLASSES[text.charAt(i)] & HEX) != 0) i++;
+			String str = text.substring(start+2, i);
+			index = i;
+			return new Token(TokenType.INT, positions, start, str.length()+2, ((int) Long.parseLong(str, 16))+"");
 		}
 		
 		TokenType tt = TokenType.INT;
-		for(int i = index; i < chars.length; i++) {
-			char c = chars[i];
-			if(DIGITS.contains(c+"")) str += c;
-			else if(c == '.' && tt == TokenType.INT) {
-				str += c;
-				tt = TokenType.FLOAT;
-			} else {
-				list.add(new Token(tt, new Sequence(line, index, str.length(), file), str));
-				return i-1;
-			}
+		int i = start;
+		for(; i < end; i++) {
+			char c = text.charAt(i);
+			if((CLASSES[c] & KIND) == DIGIT) continue;
+			if(c == '.' && tt == TokenType.INT) tt = TokenType.FLOAT;
+			else break;
+		}
+		index = i;
+		int length = i-start;
+		if(tt == TokenType.INT && length <= 2) {
+			int value = length == 1?text.charAt(start)-'0':(text.charAt(start)-'0')*10 + text.charAt(start+1)-'0';
+			if(length == 1 || value >= 10) return new Token(tt, positions, start, length, SMALL_INTS[value]);
 		}
-		list.add(new Token(tt, new Sequence(line, index, str.length(), file), str));
-		return chars.length;
+		return new Token(tt, positions, start, length, text.substring(start, i));
 	}
 	
-	private static int _string(char[] chars, int index, int line, char begchar, String file, ArrayList<Token> list) {
-		String str = "";
-		boolean escapingNext = false;
+	// a string ends at its quote or at the end of the line, an unterminated one at the end of the code is dropped
+	private Token _string(char begchar) {
+		int start = index-1, from = index, length = 0;
+		boolean escaped = false;
 		
-		HashMap<Character, String> map = new HashMap<Character, String>();
-		map.put('n', "\n");
-		map.put('t', "\t");
-		map.put('\\', "\\");
-		
-		for(int i = index+1; i < chars.length; i++) {
-			char c = chars[i];
-			
-			if(escapingNext) {
-				str+=map.getOrDefault(c, c+"");
-				escapingNext = false;
-				continue;
-			}
+		for(int i = from; i < end; i++) {
+			char c = text.charAt(i);
+			while(c != begchar && c != '\\' && c != '\n' && ++i < end) c = text.charAt(i);
+			if(i == end) break;
 			
 			if(c == '\\') {
-				escapingNext = true;
+				length = copy(from, i, length);
+				escaped = true;
+				if(++i == end) break;
+				c = text.charAt(i);
+				buffer[length++] = c == 'n'?'\n':c == 't'?'\t':c;
+				from = i+1;
 				continue;
 			}
 			
 			if(c == begchar || c == '\n') {
-				list.add(new Token(TokenType.STRING, new Sequence(line, index, str.length(), file), str));
-				return i;
-			} else str+=c;
-			escapingNext = false;
+				String str;
+				if(escaped) {
+					length = copy(from, i, length);
+					str = new String(buffer, 0, length);
+				} else str = text.substring(from, i);
+				index = i+1;
+				return new Token(TokenType.STRING, positions, start, str.length(), str);
+			}
 		}
 		
-		return chars.length;
+		index = end;
+		return null;
 	}
 	
-	private static int _identifier(char[] chars, int index, int line, String file, ArrayList<Token> list) {
-		String str = "";
-		for(int i = index; i < chars.length; i++) {
-			char c = chars[i];
-			if(LEGAL_CHARS.contains(c+"")) str += c;
-			else break;
-		}
-		for(String s:KEYWORDS) {
-			if(str.equals(s)) {
-				list.add(new Token(TokenType.KEYWORD, new Sequence(line, index, str.length(), file), str));
-				return index+str.length()-1;
-			}
-		}
+	// appends the chars from one index to another to the buffer, leaving room for one more
+	private int copy(int from, int to, int length) {
+		int needed = length+to-from+1;
+		if(needed > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length*2));
+		text.getChars(from, to, buffer, length);
+		return length+to-from;
+	}
+	
+	private Token _identifier() {
+		int start = index, i = start, hash = 0;
+		for(; i < end && (CLASSES[text.charAt(i)] & PART) != 0; i++)
+			hash = 31*hash + text.charAt(i);
+		int length = i-start;
+		index = i;
 		
-		list.add(new Token(TokenType.IDENTIFIER, new Sequence(line, index, str.length(), file), str));
-		return index+str.length()-1;
+		String keyword = KEYWORD_TABLE[keywordHash(text, start, length)];
+		if(keyword != null && keyword.length() == length && text.regionMatches(start, keyword, 0, length))
+			return new Token(TokenType.KEYWORD, positions, start, length, keyword);
+		
+		return new Token(TokenType.IDENTIFIER, positions, start, length, names.get(text, start, length, hash));
+	}
+	
+	private Token _not_equals() {
+		int start = index-1;
+		if(index < end && text.charAt(index) == '=') {
+			index++;
+			return new Token(TokenType.NOT_EQUALS, positions, start, 2);
+		}
+		return new Token(TokenType.KEYWORD, positions, start, 3, "not");
 	}
 	
-	private static int _not_equals(char[] chars, int index, int line, String file, ArrayList<Token> list) {
-		if(index < chars.length-1 && chars[index+1] == '=') {
-			list.add(new Token(TokenType.NOT_EQUALS, new Sequence(line, index, 2, file)));
-			return index+1;
-		} else {
-			list.add(new Token(TokenType.KEYWORD, new Sequence(line, index, 3, file), "not"));
-			return index;
+	private Token _comparator(TokenType e, TokenType ne) {
+		int start = index-1;
+		if(index < end && text.charAt(index) == '=') {
+			index++;
+			return new Token(e, positions, start, 2);
 		}
+		return new Token(ne, positions, start, 1);
 	}
 	
-	private static int _comparator(char[] chars, int index, TokenType e, TokenType ne, int line, String file, ArrayList<Token> list) {
-		if(index < chars.length-1) {
-			if(chars[index+1]=='=') {
-				list.add(new Token(e, new Sequence(line, index, 2, file)));
-				return index+1;
+	private Token _unaryComp(TokenType equal, TokenType doub, TokenType solo) {
+		int start = index-1;
+		if(index < end) {
+			if(text.charAt(index) == text.charAt(start)) {
+				index++;
+				return new Token(doub, positions, start, 2);
+			} else if(text.charAt(index) == '=') {
+				index++;
+				return new Token(equal, positions, start, 2);
 			}
-			
-			list.add(new Token(ne, new Sequence(line, index, 1, file)));
-			return index;
 		}
-		list.add(new Token(ne, new Sequence(line, index, 1, file)));
-		return index;
+		return new Token(solo, positions, start, 1);
 	}
 	
-	private static int _unaryComp(char[] chars, int index, TokenType equal, TokenType doub, TokenType solo, int line, String file, ArrayList<Token> list) {
-		if(index < chars.length-1) {
-			if(chars[index+1]==chars[index]) {
-				list.add(new Token(doub, new Sequence(line, index, 2, file)));
-				return index+1;
-			} else if(chars[index+1]=='=') {
-				list.add(new Token(equal, new Sequence(line, index, 2, file)));
-				return index+1;
+	/**
+	 * The identifiers met by one lexer, looked up by their slice of the source,
+	 * so that a name only becomes a String the first time it appears.
+	 */
+	private static class Names {
+		
+		private String[] names = new String[256];
+		// the hash of the name in each slot, in the high half, and one more than where it first appears in the source, so a probe reads one long
+		private long[] slots = new long[256];
+		// 32 less the bits of a slot
+		private int shift = 24;
+		private int size;
+		
+		// names like total1, total2... have close hashes, the top bits of their product with the golden ratio
+		// spread them so they do not pile up in one long run of slots
+		private int slot(int hash) {
+			return (hash*0x9E3779B9) >>> shift;
+		}
+		
+		public String get(String text, int index, int length, int hash) {
+			int mask = slots.length-1;
+			for(int i = slot(hash);; i = (i+1) & mask) {
+				long slot = slots[i];
+				if(slot == 0) {
+					String name = text.substring(index, index+length);
+					names[i] = name;
+					slots[i] = (long) hash << 32 | (index+1);
+					if(++size*4 > slots.length*3) grow();
+					return name;
+				}
+				if((int) (slot >>> 32) == hash) {
+					String name = names[i];
+					if(name.length() == length && text.regionMatches((int) slot-1, text, index, length)) return name;
+				}
 			}
 		}
 		
-		list.add(new Token(solo, new Sequence(line, index, 1, file)));
-		return index;
+		private void grow() {
+			String[] oldNames = names;
+			long[] old = slots;
+			names = new String[old.length*2];
+			slots = new long[old.length*2];
+			shift--;
+			int mask = slots.length-1;
+			for(int j = 0; j < old.length; j++) {
+				if(old[j] == 0) continue;
+				int i = slot((int) (old[j] >>> 32));
+				while(slots[i] != 0) i = (i+1) & mask;
+				names[i] = oldNames[j];
+				slots[i] = old[j];
+			}
+		}
 	}
-}
+}
\ No newline at end of file
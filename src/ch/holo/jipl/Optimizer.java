@@ -0,0 +1,375 @@
+package ch.holo.jipl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import ch.holo.jipl.Interpreter.NativeFunction;
+import ch.holo.jipl.Interpreter.Number;
+import ch.holo.jipl.Interpreter.RTResult;
+import ch.holo.jipl.Interpreter.Value;
+import ch.holo.jipl.Parser.BinaryOperation;
+import ch.holo.jipl.Parser.CallNode;
+import ch.holo.jipl.Parser.CaseDataNode;
+import ch.holo.jipl.Parser.ForInNode;
+import ch.holo.jipl.Parser.ForNode;
+import ch.holo.jipl.Parser.FunctionDefNode;
+import ch.holo.jipl.Parser.IfNode;
+import ch.holo.jipl.Parser.IncludeNode;
+import ch.holo.jipl.Parser.InstantiateNode;
+import ch.holo.jipl.Parser.InvariantNode;
+import ch.holo.jipl.Parser.ListNode;
+import ch.holo.jipl.Parser.NumberNode;
+import ch.holo.jipl.Parser.ObjectDefNode;
+import ch.holo.jipl.Parser.PointAccessNode;
+import ch.holo.jipl.Parser.ReturnNode;
+import ch.holo.jipl.Parser.StatementsNode;
+import ch.holo.jipl.Parser.UnaryOperation;
+import ch.holo.jipl.Parser.VarAccessNode;
+import ch.holo.jipl.Parser.VarAddNode;
+import ch.holo.jipl.Parser.VarAssignNode;
+import ch.holo.jipl.Parser.VarDivNode;
+import ch.holo.jipl.Parser.VarModifyNode;
+import ch.holo.jipl.Parser.VarMultNode;
+import ch.holo.jipl.Parser.VarSubNode;
+import ch.holo.jipl.Parser.WhileNode;
+import ch.holo.jipl.Token.TokenType;
+
+/**
+ * Rewrites a resolved tree before it is run, one {@link Pass} after the other.
+ * Every pass can be switched off through its {@link Pass#enabled} flag, and other passes can be added to {@link #PASSES}.
+ */
+public class Optimizer {
+
+	public static abstract class Pass {
+		public final String name;
+		public boolean enabled = true;
+
+		public Pass(String name) { this.name = name; }
+
+		// the node to run instead of the given one, the context is null when the names it will run with are not known yet
+		public abstract Object run(Object node, Context context);
+
+		public String toString() { return name; }
+	}
+
+	public static final Pass FOLD_CONSTANTS = new Pass("fold constants") {
+		public Object run(Object node, Context context) { return new Folding(context).fold(node); }
+	};
+
+	public static final Pass REMOVE_DEAD_BRANCHES = new Pass("remove dead branches") {
+		public Object run(Object node, Context context) { return prune(node); }
+	};
+
+	public static final Pass HOIST_INVARIANTS = new Pass("hoist invariants") {
+		public Object run(Object node, Context context) {
+			each(node, o -> { if(o instanceof FunctionDefNode && ((FunctionDefNode) o).frameSize >= 0) new Hoisting((FunctionDefNode) o).loops(((FunctionDefNode) o).body); });
+			return node;
+		}
+	};
+
+	public static final ArrayList<Pass> PASSES = new ArrayList<Pass>(Arrays.asList(FOLD_CONSTANTS, REMOVE_DEAD_BRANCHES, HOIST_INVARIANTS));
+
+	public static Object optimize(Object node, Context context) {
+		for(Pass pass:PASSES)
+			if(pass.enabled) node = pass.run(node, context);
+		return node;
+	}
+
+	/**
+	 * Operations on literals are computed once, and so are calls of pure {@link NativeFunction}s on literals.
+	 * Any run against the same context may rebind a global, so the value of a name is never folded,
+	 * a folded call only gives its result while the name still holds the very native function it was computed with.
+	 */
+	private static class Folding {
+
+		private final Context context;
+
+		public Folding(Context context) {
+			this.context = context;
+		}
+
+		public Object fold(Object node) {
+			children(node, this::fold);
+
+			if(node instanceof BinaryOperation) {
+				BinaryOperation n = (BinaryOperation) node;
+				if(!(n.leftNode instanceof NumberNode) || n.operator == BinaryOperation.NONE) return node;
+				Number left = ((NumberNode) n.leftNode).value;
+				if(n.isLogical()) {
+					Object decided = Interpreter.shortCircuit(left, n.operator);
+					if(decided != null) return constant(decided, n.operationToken);
+				}
+				if(!(n.rightNode instanceof NumberNode)) return node;
+				NumberNode right = (NumberNode) n.rightNode;
+				return constant(Interpreter.compute(n.operator, left, right.value), n.operationToken, node);
+			} else if(node instanceof UnaryOperation) {
+				UnaryOperation n = (UnaryOperation) node;
+				if(!(n.node instanceof NumberNode)) return node;
+				Number value = ((NumberNode) n.node).value;
+				if(n.operationToken.matches(TokenType.MINUS)) return constant(value.mult(Interpreter.MINUS_ONE), n.operationToken, node);
+				if(n.operationToken.matches("not", TokenType.KEYWORD)) return constant(value._not(), n.operationToken, node);
+				return n.node;
+			} else if(node instanceof CallNode) {
+				CallNode n = (CallNode) node;
+				if(!(n.nodeToCall instanceof VarAccessNode)) return node;
+				Object function = global((VarAccessNode) n.nodeToCall);
+				if(!(function instanceof NativeFunction) || !((NativeFunction) function).pure) return node;
+				Value[] args = new Value[n.args.length];
+				for(int i = 0; i < args.length; i++) {
+					if(!(n.args[i] instanceof NumberNode)) return node;
+					args[i] = ((NumberNode) n.args[i]).value;
+				}
+				Object result = ((NativeFunction) function).execute(args);
+				if(!(result instanceof RTResult) || ((RTResult) result).error != null) return node;
+				Object value = ((RTResult) result).value;
+				if(!(value instanceof Number) || value == Number.NULL) return node;
+				n.folding = (NativeFunction) function;
+				n.folded = (Number) value;
+			}
+			return node;
+		}
+
+		// what a global name holds when the tree is optimized, it is checked again every time the node runs
+		private Object global(VarAccessNode node) {
+			if(context == null || node.slot >= 0) return null;
+			Context source = context.lookup((String) node.name.value);
+			if(source == null || source.parent != null) return null;
+			int index = source.symbols.find((String) node.name.value);
+			return source.symbols.getter(index) != null?null:source.symbols.value(index);
+		}
+
+		private static Object constant(Object value, Token at, Object otherwise) {
+			return value instanceof Number && value != Number.NULL?constant(value, at):otherwise;
+		}
+
+		private static NumberNode constant(Object value, Token at) {
+			Number n = (Number) value;
+			return new NumberNode(new Token(n.integral?TokenType.INT:TokenType.FLOAT, at, n.toString()), n);
+		}
+	}
+
+	// drops if cases that can never be taken, and statements that do nothing at all
+	private static Object prune(Object node) {
+		children(node, Optimizer::prune);
+
+		if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			for(int i = 0; i < n.cases.size(); i++) {
+				Object condition = n.cases.get(i).condition;
+				if(!(condition instanceof NumberNode)) continue;
+				if(((NumberNode) condition).value.isTrue()) {
+					n.else_case = n.cases.get(i);
+					n.cases.subList(i, n.cases.size()).clear();
+				} else n.cases.remove(i--);
+			}
+		} else if(node instanceof StatementsNode) ((StatementsNode) node).elementNodes.removeIf(Optimizer::isDead);
+		return node;
+	}
+
+	private static boolean isDead(Object node) {
+		if(node instanceof IfNode) return ((IfNode) node).cases.isEmpty() && ((IfNode) node).else_case == null;
+		if(node instanceof WhileNode) {
+			Object condition = ((WhileNode) node).condition;
+			return condition instanceof NumberNode && !((NumberNode) condition).value.isTrue();
+		}
+		return false;
+	}
+
+	/**
+	 * Wraps the operations of a loop that only read literals and locals the loop never writes in an {@link InvariantNode},
+	 * so they are computed again only when one of those locals holds another number.
+	 * Locals written by nested functions or stepped in place by a for loop are never taken as invariant.
+	 */
+	private static class Hoisting {
+
+		private final FunctionDefNode function;
+		private final HashSet<String> shared = new HashSet<String>();
+
+		public Hoisting(FunctionDefNode function) {
+			this.function = function;
+			each(function.body, o -> {
+				if(o instanceof FunctionDefNode) each(((FunctionDefNode) o).body, w -> written(w, shared));
+				else if(o instanceof ForNode && ((ForNode) o).unboxed) shared.add((String) ((ForNode) o).varName.value);
+			});
+		}
+
+		public void loops(Object node) {
+			if(node instanceof FunctionDefNode) return;
+			if(node instanceof WhileNode || node instanceof ForNode || node instanceof ForInNode) {
+				HashSet<String> written = new HashSet<String>(shared);
+				each(node, o -> written(o, written));
+				if(node instanceof WhileNode) {
+					WhileNode n = (WhileNode) node;
+					n.condition = wrap(n.condition, written);
+					n.body = wrap(n.body, written);
+				} else if(node instanceof ForNode) ((ForNode) node).body = wrap(((ForNode) node).body, written);
+				else ((ForInNode) node).body = wrap(((ForInNode) node).body, written);
+			}
+			children(node, child -> {
+				loops(child);
+				return child;
+			});
+		}
+
+		private Object wrap(Object node, HashSet<String> written) {
+			if(node instanceof FunctionDefNode || node instanceof InvariantNode) return node;
+			if((node instanceof BinaryOperation || node instanceof UnaryOperation) && isInvariant(node, written)) {
+				ArrayList<Integer> leaves = new ArrayList<Integer>();
+				each(node, o -> {
+					if(o instanceof VarAccessNode && !leaves.contains(((VarAccessNode) o).slot)) leaves.add(((VarAccessNode) o).slot);
+				});
+				if(leaves.isEmpty()) return node;
+				return new InvariantNode(node, function.frameSize++, leaves.stream().mapToInt(Integer::intValue).toArray());
+			}
+			children(node, child -> wrap(child, written));
+			return node;
+		}
+
+		private static boolean isInvariant(Object node, HashSet<String> written) {
+			if(node instanceof NumberNode) return true;
+			if(node instanceof VarAccessNode) {
+				VarAccessNode n = (VarAccessNode) node;
+				return n.slot >= 0 && n.depth == 0 && !written.contains(n.name.value);
+			}
+			if(node instanceof BinaryOperation) {
+				BinaryOperation n = (BinaryOperation) node;
+				return n.operator != BinaryOperation.NONE && isInvariant(n.leftNode, written) && isInvariant(n.rightNode, written);
+			}
+			return node instanceof UnaryOperation && isInvariant(((UnaryOperation) node).node, written);
+		}
+	}
+
+	// the names a node may bind or assign
+	private static void written(Object node, HashSet<String> names) {
+		if(node instanceof VarAssignNode) names.add((String) ((VarAssignNode) node).name.value);
+		else if(node instanceof VarModifyNode) names.add((String) ((VarModifyNode) node).name.value);
+		else if(node instanceof VarAddNode) names.add((String) ((VarAddNode) node).name.value);
+		else if(node instanceof VarSubNode) names.add((String) ((VarSubNode) node).name.value);
+		else if(node instanceof VarMultNode) names.add((String) ((VarMultNode) node).name.value);
+		else if(node instanceof VarDivNode) names.add((String) ((VarDivNode) node).name.value);
+		else if(node instanceof ForNode) names.add((String) ((ForNode) node).varName.value);
+		else if(node instanceof ForInNode) names.add((String) ((ForInNode) node).varName.value);
+		else if(node instanceof FunctionDefNode) {
+			FunctionDefNode n = (FunctionDefNode) node;
+			if(n.name != null) names.add((String) n.name.value);
+			for(Token arg:n.args) names.add((String) arg.value);
+		} else if(node instanceof ObjectDefNode) {
+			ObjectDefNode n = (ObjectDefNode) node;
+			names.add((String) n.name.value);
+			for(Token arg:n.args) names.add((String) arg.value);
+		}
+	}
+
+	private static void each(Object node, Consumer<Object> visitor) {
+		visitor.accept(node);
+		children(node, child -> {
+			each(child, visitor);
+			return child;
+		});
+	}
+
+	// replaces every child of node by what f gives for it, the names of members after a point are not children
+	private static void children(Object node, UnaryOperator<Object> f) {
+		if(node instanceof BinaryOperation) {
+			BinaryOperation n = (BinaryOperation) node;
+			n.leftNode = f.apply(n.leftNode);
+			n.rightNode = f.apply(n.rightNode);
+		} else if(node instanceof UnaryOperation) {
+			UnaryOperation n = (UnaryOperation) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof VarAssignNode) {
+			VarAssignNode n = (VarAssignNode) node;
+			n.expression = f.apply(n.expression);
+		} else if(node instanceof VarModifyNode) {
+			VarModifyNode n = (VarModifyNode) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof VarAddNode) {
+			VarAddNode n = (VarAddNode) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof VarSubNode) {
+			VarSubNode n = (VarSubNode) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof VarMultNode) {
+			VarMultNode n = (VarMultNode) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof VarDivNode) {
+			VarDivNode n = (VarDivNode) node;
+			n.node = f.apply(n.node);
+		} else if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			for(CaseDataNode cdn:n.cases) {
+				cdn.condition = f.apply(cdn.condition);
+				cdn.statements = f.apply(cdn.statements);
+			}
+			if(n.else_case != null) n.else_case.statements = f.apply(n.else_case.statements);
+		} else if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			n.start = f.apply(n.start);
+			n.end = f.apply(n.end);
+			if(n.step != null) n.step = f.apply(n.step);
+			n.body = f.apply(n.body);
+		} else if(node instanceof ForInNode) {
+			ForInNode n = (ForInNode) node;
+			n.array = f.apply(n.array);
+			n.body = f.apply(n.body);
+		} else if(node instanceof WhileNode) {
+			WhileNode n = (WhileNode) node;
+			n.condition = f.apply(n.condition);
+			n.body = f.apply(n.body);
+		} else if(node instanceof FunctionDefNode) {
+			FunctionDefNode n = (FunctionDefNode) node;
+			n.body = f.apply(n.body);
+		} else if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			n.nodeToCall = f.apply(n.nodeToCall);
+			for(int i = 0; i < n.args.length; i++) n.args[i] = f.apply(n.args[i]);
+		} else if(node instanceof InstantiateNode) {
+			InstantiateNode n = (InstantiateNode) node;
+			n.nodeToCall = f.apply(n.nodeToCall);
+			for(int i = 0; i < n.args.length; i++) n.args[i] = f.apply(n.args[i]);
+		} else if(node instanceof ListNode) {
+			ArrayList<Object> elements = ((ListNode) node).elementNodes;
+			for(int i = 0; i < elements.size(); i++) elements.set(i, f.apply(elements.get(i)));
+		} else if(node instanceof StatementsNode) {
+			ArrayList<Object> elements = ((StatementsNode) node).elementNodes;
+			for(int i = 0; i < elements.size(); i++) elements.set(i, f.apply(elements.get(i)));
+		} else if(node instanceof ReturnNode) {
+			ReturnNode n = (ReturnNode) node;
+			if(n.toReturn != null) n.toReturn = f.apply(n.toReturn);
+		} else if(node instanceof PointAccessNode) {
+			Object[] nodes = ((PointAccessNode) node).nodes;
+			nodes[0] = f.apply(nodes[0]);
+			for(int i = 1; i < nodes.length; i++) nodes[i] = member(nodes[i], f);
+		} else if(node instanceof ObjectDefNode) {
+			ObjectDefNode n = (ObjectDefNode) node;
+			if(n.superClass != null) n.superClass = f.apply(n.superClass);
+			n.statements = f.apply(n.statements);
+			for(FunctionDefNode method:n.methods) f.apply(method);
+		} else if(node instanceof IncludeNode) {
+			Object[] toInclude = ((IncludeNode) node).toInclude;
+			for(int i = 0; i < toInclude.length; i++) toInclude[i] = f.apply(toInclude[i]);
+		} else if(node instanceof InvariantNode) {
+			InvariantNode n = (InvariantNode) node;
+			n.node = f.apply(n.node);
+		}
+	}
+
+	private static Object member(Object node, UnaryOperator<Object> f) {
+		if(node instanceof VarAccessNode) return node;
+		if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			if(!(n.nodeToCall instanceof VarAccessNode)) n.nodeToCall = f.apply(n.nodeToCall);
+			for(int i = 0; i < n.args.length; i++) n.args[i] = f.apply(n.args[i]);
+		} else if(node instanceof VarModifyNode) ((VarModifyNode) node).node = f.apply(((VarModifyNode) node).node);
+		else if(node instanceof VarAddNode) ((VarAddNode) node).node = f.apply(((VarAddNode) node).node);
+		else if(node instanceof VarSubNode) ((VarSubNode) node).node = f.apply(((VarSubNode) node).node);
+		else if(node instanceof VarMultNode) ((VarMultNode) node).node = f.apply(((VarMultNode) node).node);
+		else if(node instanceof VarDivNode) ((VarDivNode) node).node = f.apply(((VarDivNode) node).node);
+		else return f.apply(node);
+		return node;
+	}
+
+}
\ No newline at end of file
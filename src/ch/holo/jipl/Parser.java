@@ -1,45 +1,104 @@
 package ch.holo.jipl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import ch.holo.jipl.Error.SyntaxError;
+import ch.holo.jipl.Interpreter.GlobalCache;
+import ch.holo.jipl.Interpreter.InlineCache;
+import ch.holo.jipl.Interpreter.NativeFunction;
+import ch.holo.jipl.Interpreter.ObjectClass;
 import ch.holo.jipl.Interpreter.Number;
+import ch.holo.jipl.Interpreter.Shape;
+import ch.holo.jipl.Interpreter.StringValue;
 import ch.holo.jipl.Token.TokenType;
 
 public class Parser {
 	
-	public static class NumberNode {
+	public static abstract class Node {
+		public abstract Object execute(Interpreter interpreter, Context context);
+	}
+	
+	public static class NumberNode extends Node {
 		
 		protected Token token;
-		public NumberNode(Token token) { this.token = token; }
+		protected Number value;
+		
+		public NumberNode(Token token) {
+			this.token = token;
+			this.value = (Number) new Number(token.getValue()).setOrigin(token).makeConstant();
+		}
+		
+		public NumberNode(Token token, Number value) {
+			this.token = token;
+			this.value = (Number) value.copy().setOrigin(token).makeConstant();
+		}
 		
 		public String toString() { return token.getValue().toString(); }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitNumberNode(this, context); }
+		
 	}
 	
-	public static class StringNode {
+	public static class StringNode extends Node {
 		protected Token token;
+		protected StringValue value;
 		
-		public StringNode(Token token) { this.token = token; }
+		public StringNode(Token token) {
+			this.token = token;
+			this.value = (StringValue) new StringValue(token.getValue()).setOrigin(token).makeConstant();
+		}
 		public String toString() { return token.toString(); }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitStringNode(this, context); }
 	}
 	
-	public static class BinaryOperation {
+	public static class BinaryOperation extends Node {
+		
+		public static final int ADD = 0, SUB = 1, MULT = 2, DIV = 3, EQUALS = 4, NOT_EQUALS = 5,
+				LESS = 6, LESS_EQUALS = 7, GREATER = 8, GREATER_EQUALS = 9, AND = 10, OR = 11, NONE = 12;
+		public static final int UNINITIALIZED = 0, NUMBERS = 1, CONSTANT = 2, GENERIC = 3;
+		public static final String[] OVERLOADS = { "add_", "sub_", "mult_", "div_", "equals_", "not_equals_",
+				"less_", "less_equals_", "greater_", "greater_equals_", "and_", "or_" };
 		
 		protected Object leftNode, rightNode;
 		protected Token operationToken;
+		// shared by every run of a cached tree, each state is only a guess checked against the operands every time,
+		// so a run seeing the state another one left, or losing its own write to it, still computes the right value
+		protected int operator, state = UNINITIALIZED;
 		
 		public BinaryOperation(Object leftNode, Token operationToken, Object rightNode) { 
 			this.leftNode = leftNode;
 			this.operationToken = operationToken;
 			this.rightNode = rightNode;
+			this.operator = operator(operationToken);
+		}
+		
+		public static int operator(Token token) {
+			switch(token.type) {
+				case PLUS: 				return ADD;
+				case MINUS: 			return SUB;
+				case MULT: 				return MULT;
+				case DIV: 				return DIV;
+				case DOUBLE_EQUALS: 	return EQUALS;
+				case NOT_EQUALS: 		return NOT_EQUALS;
+				case LESS: 				return LESS;
+				case LESS_EQUALS: 		return LESS_EQUALS;
+				case GREATER: 			return GREATER;
+				case GREATER_EQUALS: 	return GREATER_EQUALS;
+				case KEYWORD: 			return "and".equals(token.value)?AND:"or".equals(token.value)?OR:NONE;
+				default: 				return NONE;
+			}
 		}
 		
+		public boolean isLogical() { return operator == AND || operator == OR; }
+		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitBinaryOperation(this, context); }
+		
 		public String toString() { return "("+leftNode+" "+(operationToken.matches(TokenType.PLUS)?"+":(operationToken.matches(TokenType.MINUS)?"-":operationToken.matches(TokenType.MULT)?"*":operationToken.matches(TokenType.DIV)?"/":"??"))+" "+rightNode+")"; }
 	
 	}
 	
-	public static class UnaryOperation {
+	public static class UnaryOperation extends Node {
 		
 		protected Token operationToken;
 		protected Object node;
@@ -51,9 +110,11 @@ public class Parser {
 		
 		public String toString() { return "(" + operationToken + ", " + node + ")"; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitUnaryOperation(this, context); }
+		
 	}
 	
-	public static class IfNode {
+	public static class IfNode extends Node {
 		
 		protected ArrayList<CaseDataNode> cases;
 		protected CaseDataNode else_case;
@@ -65,12 +126,15 @@ public class Parser {
 		
 		public String toString() { return "if " + cases + ": " + else_case + ""; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitIfNode(this, context); }
+		
 	}
 	
-	public static class VarAssignNode {
+	public static class VarAssignNode extends Node {
 		
 		protected Token name;
 		protected Object expression;
+		protected int depth = -1, slot = -1;
 		
 		public VarAssignNode(Token name, Object expression) {
 			this.name = name;
@@ -78,33 +142,42 @@ public class Parser {
 		}
 		
 		public String toString() { return ""+name+" = "+expression; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarAssignNode(this, context); }
 	}
 	
-	public static class VarAccessNode {
+	public static class VarAccessNode extends Node {
 		public Token name;
+		protected int depth = -1, slot = -1;
+		protected InlineCache cache;
+		protected GlobalCache global;
 		public VarAccessNode(Token name) { this.name = name; }
 		public String toString() { return name.getValue().toString(); }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarAccessNode(this, context); }
 	}
 	
-	public static class ThisNode {
+	public static class ThisNode extends Node {
 		public ThisNode() {}
 		public String toString() { return "this"; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitThisNode(this, context); }
 	}
 	
-	public static class VarModifyNode {
+	public static class VarModifyNode extends Node {
 		protected Token name;
 		protected Object node;
+		protected int depth = -1, slot = -1;
 		public VarModifyNode(Token name, Object node) {
 			this.name = name;
 			this.node = node;
 		}
 		
 		public String toString() { return name+" = "+node; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarModifyNode(this, context); }
 	}
 	
-	public static class VarAddNode {
+	public static class VarAddNode extends Node {
 		protected Token name;
 		protected Object node;
+		protected int depth = -1, slot = -1;
 		
 		public VarAddNode(Token name, Object node) {
 			this.name = name;
@@ -112,11 +185,13 @@ public class Parser {
 		}
 		
 		public String toString() { return name+" += "+node; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarAddNode(this, context); }
 	}
 	
-	public static class VarSubNode {
+	public static class VarSubNode extends Node {
 		protected Token name;
 		protected Object node;
+		protected int depth = -1, slot = -1;
 		
 		public VarSubNode(Token name, Object node) {
 			this.name = name;
@@ -124,11 +199,13 @@ public class Parser {
 		}
 		
 		public String toString() { return ""+name+" -= "+node+""; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarSubNode(this, context); }
 	}
 	
-	public static class VarMultNode {
+	public static class VarMultNode extends Node {
 		protected Token name;
 		protected Object node;
+		protected int depth = -1, slot = -1;
 		
 		public VarMultNode(Token name, Object node) {
 			this.name = name;
@@ -136,11 +213,13 @@ public class Parser {
 		}
 		
 		public String toString() { return ""+name+" *= "+node+""; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarMultNode(this, context); }
 	}
 	
-	public static class VarDivNode {
+	public static class VarDivNode extends Node {
 		protected Token name;
 		protected Object node;
+		protected int depth = -1, slot = -1;
 		
 		public VarDivNode(Token name, Object node) {
 			this.name = name;
@@ -148,13 +227,15 @@ public class Parser {
 		}
 		
 		public String toString() { return ""+name+" /= "+node+""; }
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitVarDivNode(this, context); }
 	}
 	
-	public static class ForNode {
+	public static class ForNode extends Node {
 		
 		protected Token varName;
 		protected Object start, end, step, body;
-		protected boolean shouldReturnNull;
+		protected boolean shouldReturnNull, scoped = true, discarded, unboxed;
+		protected int slot = -1;
 		
 		public ForNode(Token varName, Object startNode, Object endNode, Object stepNode, Object bodyNode, boolean shouldReturnNull) {
 			this.varName = varName;
@@ -167,13 +248,18 @@ public class Parser {
 		
 		public String toString() { return "for " + varName.value.toString() + " = " + start +" to "+end+": "+body; }
 		
+		public boolean collects() { return !shouldReturnNull && !discarded; }
+		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitForNode(this, context); }
+		
 	}
 	
-	public static class ForInNode {
+	public static class ForInNode extends Node {
 		
 		protected Token varName;
 		protected Object array, body;
-		protected boolean shouldReturnNull;
+		protected boolean shouldReturnNull, scoped = true, discarded;
+		protected int slot = -1;
 		
 		public ForInNode(Token varName, Object arrayNode, Object bodyNode, boolean shouldReturnNull) {
 			this.varName = varName;
@@ -184,12 +270,16 @@ public class Parser {
 		
 		public String toString() { return "for "+varName+" in "+array+": "+body; }
 		
+		public boolean collects() { return !shouldReturnNull && !discarded; }
+		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitForInNode(this, context); }
+		
 	}
 	
-	public static class WhileNode {
+	public static class WhileNode extends Node {
 		
 		protected Object condition, body;
-		protected boolean shouldReturnNull;
+		protected boolean shouldReturnNull, scoped = true, discarded;
 		
 		public WhileNode(Object condition, Object bodyNode, boolean shouldReturnNull) {
 			this.condition = condition;
@@ -199,14 +289,20 @@ public class Parser {
 		
 		public String toString() { return "while "+condition+": "+body; }
 		
+		public boolean collects() { return !shouldReturnNull && !discarded; }
+		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitWhileNode(this, context); }
+		
 	}
 	
-	public static class FunctionDefNode {
+	public static class FunctionDefNode extends Node {
 		
 		protected Token name;
 		protected Object body;
 		protected Token[] args;
 		protected boolean shouldAutoReturn;
+		protected int frameSize = -1;
+		protected final JIT.Profile profile = new JIT.Profile();
 		
 		public FunctionDefNode(Token name, Object bodyNode, boolean shouldAutoReturn, Token... args) {
 			this.name = name;
@@ -217,13 +313,19 @@ public class Parser {
 		
 		public String toString() { return "Definition of " + name; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitFunctionDefNode(this, context); }
+		
 	}
 	
-	public static class CallNode {
+	public static class CallNode extends Node {
 		
 		protected Token token;
 		protected Object nodeToCall;
 		protected Object[] args;
+		protected boolean tail;
+		// set by the optimizer, what the call gives as long as the name still holds that pure native function
+		protected NativeFunction folding;
+		protected Number folded;
 		
 		public CallNode(Token token, Object nodeToCall, Object... args) {
 			this.nodeToCall = nodeToCall;
@@ -232,9 +334,11 @@ public class Parser {
 		
 		public String toString() { return "Call of "+nodeToCall; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitCallNode(this, context); }
+		
 	}
 	
-	public static class ListNode {
+	public static class ListNode extends Node {
 		
 		public ArrayList<Object> elementNodes;
 
@@ -246,11 +350,14 @@ public class Parser {
 			return "ListNode>"+elementNodes;
 		}
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitListNode(this, context); }
+		
 	}
 	
-	public static class StatementsNode {
+	public static class StatementsNode extends Node {
 		
 		public ArrayList<Object> elementNodes;
+		protected boolean discarded;
 
 		public StatementsNode(ArrayList<Object> elementNodes) {
 			this.elementNodes = elementNodes;
@@ -260,24 +367,32 @@ public class Parser {
 			return "Statements>"+elementNodes;
 		}
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitStatementsNode(this, context); }
+		
 	}
 	
-	public static class PointAccessNode {
+	public static class PointAccessNode extends Node {
 		
 		protected Object[] nodes;
 		
 		protected PointAccessNode(Object... nodes) {
 			this.nodes = nodes;
+			for(int i = 1; i < nodes.length; i++) {
+				Object member = nodes[i] instanceof CallNode?((CallNode) nodes[i]).nodeToCall:nodes[i];
+				if(member instanceof VarAccessNode) ((VarAccessNode) member).cache = new InlineCache();
+			}
 		}
 		
 		public String toString() { String str = ""; for(Object o:nodes) str+=o; return "P.A.("+str+")"; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitPointAccessNode(this, context); }
+		
 	}
 	
 	public static class CaseDataNode {
 		
 		protected Object condition, statements;
-		protected boolean shouldReturnNull;
+		protected boolean shouldReturnNull, scoped = true;
 		
 		public CaseDataNode(Object condition, Object statements, boolean shouldReturnNull) {
 			this.condition = condition;
@@ -289,37 +404,109 @@ public class Parser {
 		
 	}
 	
-	public static class ReturnNode {
+	public static class ReturnNode extends Node {
 		
 		protected Object toReturn;
 		public ReturnNode(Object toReturn) {
 			this.toReturn = toReturn;
 		}
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitReturnNode(this, context); }
+		
 	}
 	
-	public static class ContinueNode { public String toString() { return "continue"; } }
-	public static class BreakNode { public String toString() { return "break"; } }
+	public static class ContinueNode extends Node {
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitContinueNode(this, context); }
+		public String toString() { return "continue"; }
+	}
+	
+	public static class BreakNode extends Node {
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitBreakNode(this, context); }
+		public String toString() { return "break"; }
+	}
 	
-	public static class ObjectDefNode {
+	/**
+	 * An expression the {@link Optimizer} found to be invariant in its loop. Its value is kept in the frame slot
+	 * next to the operands it was computed from and reused as long as the same operands are read again.
+	 */
+	public static class InvariantNode extends Node {
+		
+		protected Object node;
+		protected int slot;
+		protected int[] leaves;
+		
+		public InvariantNode(Object node, int slot, int[] leaves) {
+			this.node = node;
+			this.slot = slot;
+			this.leaves = leaves;
+		}
+		
+		public String toString() { return "invariant " + node; }
+		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitInvariantNode(this, context); }
+		
+	}
+	
+	public static class ObjectDefNode extends Node {
 		
 		protected Token name;
 		protected Token[] args;
 		protected Object superClass;
-		protected Object body;
+		protected Object body, statements;
+		protected FunctionDefNode[] methods;
+		// the shape the instances start from, the same for every run of the tree so the inline caches of a cached script stay valid,
+		// one for each superclass layout since the methods of the superclass come first in the method table
+		private final HashMap<Shape, Shape> shapes = new HashMap<Shape, Shape>();
 		
 		public ObjectDefNode(Token name, Token[] args, Object body, Object superClass) {
 			this.name = name;
 			this.args = args;
 			this.body = body;
 			this.superClass = superClass;
+			hoist();
+		}
+		
+		public synchronized Shape shape(Object superClass) {
+			Shape parent = superClass instanceof ObjectClass?((ObjectClass) superClass).shape:null;
+			Shape shape = shapes.get(parent);
+			if(shape == null) shapes.put(parent, shape = new Shape());
+			return shape;
+		}
+		
+		private void hoist() {
+			statements = body;
+			methods = new FunctionDefNode[0];
+			if(!(body instanceof StatementsNode)) return;
+			
+			ArrayList<Object> elements = ((StatementsNode) body).elementNodes;
+			ArrayList<Object> names = new ArrayList<Object>(), shared = new ArrayList<Object>();
+			for(Token arg:args) names.add(arg.value);
+			for(Object o:elements) {
+				Object name = o instanceof FunctionDefNode && ((FunctionDefNode) o).name != null?((FunctionDefNode) o).name.value:o instanceof VarAssignNode?((VarAssignNode) o).name.value:null;
+				if(name == null) continue;
+				if(names.contains(name)) shared.add(name);
+				names.add(name);
+			}
+			
+			ArrayList<FunctionDefNode> hoisted = new ArrayList<FunctionDefNode>();
+			ArrayList<Object> rest = new ArrayList<Object>();
+			for(Object o:elements) {
+				if(o instanceof FunctionDefNode && ((FunctionDefNode) o).name != null && !shared.contains(((FunctionDefNode) o).name.value))
+					hoisted.add((FunctionDefNode) o);
+				else rest.add(o);
+			}
+			
+			methods = hoisted.toArray(methods);
+			statements = new StatementsNode(rest);
 		}
 		
 		public String toString() { return name+" DEF TO "+args + " TO " + body; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitObjectDefNode(this, context); }
+		
 	}
 	
-	public static class InstantiateNode {
+	public static class InstantiateNode extends Node {
 		
 		protected Object nodeToCall;
 		protected Object[] args;
@@ -331,9 +518,11 @@ public class Parser {
 		
 		public String toString() { return "Instantiate of "+nodeToCall; }
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitInstantiateNode(this, context); }
+		
 	}
 	
-//	public static class IncludeNode {
+//	public static class IncludeNode extends Node {
 //		
 //		protected Object toInclude;
 //		public IncludeNode(Object toInclude) {
@@ -349,36 +538,21 @@ public class Parser {
 			this.toInclude = toInclude;
 		}
 		
+		public Object execute(Interpreter interpreter, Context context) { return interpreter.visitIncludeNode(this, context); }
+		
 	}
 	
 	public static class ParseResult {
 		
 		protected Error error = null;
 		public Object node = null;
-		protected int last_registered_advance = 0, advance_count = 0, reverse_count = 0;
-		
-		public void register_advancement() {
-			last_registered_advance = 1;
-			advance_count++;
-		}
 		
 		public Object register(Object node) {
 			ParseResult pr = (ParseResult) node;
-			last_registered_advance = pr.advance_count;
-			advance_count += pr.advance_count;
 			if(pr.error != null) error = pr.error;
 			return pr.node;
 		}
 		
-		public Object try_register(ParseResult node) {
-			if(node.error != null) {
-				reverse_count = node.advance_count;
-				if(node.error != null && reverse_count >= 1) error = node.error;
-				return node.node;
-			}
-			return register(node);
-		}
-		
 		public ParseResult success(Object node) {
 			this.node = node;
 			return this;
@@ -394,202 +568,210 @@ public class Parser {
 		}
 	}
 	
-	protected ArrayList<Token> tokens;
+	// binding powers of the binary operators, from the loosest to the tightest
+	protected static final int LOGICAL = 1, COMPARISON = 2, SUM = 3, PRODUCT = 4;
+	
+	protected TokenStream tokens;
 	protected Token currentToken;
-	protected int index = -1;
 	
-	public Parser(ArrayList<Token> tokens) {
+	// the tokens already pulled from the stream past currentToken, in a ring starting at head
+	private Token[] ahead = new Token[4];
+	private int head, count;
+	
+	public Parser(TokenStream tokens) {
 		this.tokens = tokens;
 		advance();
 	}
+	
+	public Parser(ArrayList<Token> tokens) {
+		this(TokenStream.of(tokens));
+	}
 
 	private Token advance() {
-		index++;
-		updateCurrentToken();
+		Token t;
+		if(count > 0) {
+			t = ahead[head];
+			ahead[head] = null;
+			head = (head+1) & (ahead.length-1);
+			count--;
+		} else t = tokens.next();
+		if(t != null) currentToken = t;
 		return currentToken;
 	}
 	
-	private Token reverse(int amount) {
-		index-=amount;
-		debug("Parser: Reversing "+amount);
-		updateCurrentToken();
-		return currentToken;
+	private Token peek(int distance) {
+		while(count <= distance) {
+			Token t = tokens.next();
+			if(t == null) return null;
+			if(count == ahead.length) {
+				Token[] grown = new Token[ahead.length*2];
+				for(int i = 0; i < count; i++) grown[i] = ahead[(head+i) & (ahead.length-1)];
+				ahead = grown;
+				head = 0;
+			}
+			ahead[(head+count) & (ahead.length-1)] = t;
+			count++;
+		}
+		return ahead[(head+distance) & (ahead.length-1)];
 	}
 	
-	private void advanceNewLines(ParseResult pr) {
-		while(currentToken.matches(TokenType.NLINE)) {
-			pr.register_advancement();
+	private void advanceNewLines() {
+		while(currentToken.matches(TokenType.NLINE))
 			advance();
-		}
 	}
 	
-	private void updateCurrentToken() {
-		if(index < tokens.size() && index >= 0) currentToken = tokens.get(index);
+	private Token peekPastNewLines() {
+		Token t = currentToken;
+		for(int i = 0; t.matches(TokenType.NLINE); i++) {
+			Token next = peek(i);
+			if(next == null) break;
+			t = next;
+		}
+		return t;
 	}
 	
-	private Object factor() {
-		ParseResult pr = new ParseResult();
-		
-		advanceNewLines(pr);
+	private Object atom(ParseResult pr) {
+		advanceNewLines();
 		
 		Token t = currentToken;
 		
 		if(t.matches(TokenType.INT, TokenType.FLOAT)) {
-			pr.register_advancement();
 			advance();
-			return pr.success(new NumberNode(t));
+			return new NumberNode(t);
 		} if(t.matches(TokenType.STRING)) {
-			pr.register_advancement();
 			advance();
-			return pr.success(new StringNode(t));
+			return new StringNode(t);
 		} else if(t.matches(TokenType.IDENTIFIER)) {
-			pr.register_advancement();
 			advance();
 			
 			if(currentToken.matches(TokenType.EQUALS)) {
-				pr.register_advancement();
 				advance();
-				
-				Object o = pr.register(expression());
-				if(pr.error != null) return pr;
-				
-				return pr.success(new VarModifyNode(t, o));
+				Object o = expression(pr);
+				return pr.error != null?null:new VarModifyNode(t, o);
 			} else if(currentToken.matches(TokenType.DPLUS)) {
-				pr.register_advancement();
 				advance();
-				return pr.success(new VarAddNode(t, new NumberNode(new Token(TokenType.INT, t.seq, "1"))));
+				return new VarAddNode(t, new NumberNode(new Token(TokenType.INT, t, "1")));
 			} else if(currentToken.matches(TokenType.DMINUS)) {
-				pr.register_advancement();
 				advance();
-				return pr.success(new VarSubNode(t, new NumberNode(new Token(TokenType.INT, t.seq, "1"))));
+				return new VarSubNode(t, new NumberNode(new Token(TokenType.INT, t, "1")));
 			} else if(currentToken.matches(TokenType.PLUS_EQUAL)) {
-				pr.register_advancement();
 				advance();
-				Object o = pr.register(expression());
-				if(pr.error != null) return pr;
-				return pr.success(new VarAddNode(t, o));
+				Object o = expression(pr);
+				return pr.error != null?null:new VarAddNode(t, o);
 			} else if(currentToken.matches(TokenType.MINUS_EQUAL)) {
-				pr.register_advancement();
 				advance();
-				Object o = pr.register(expression());
-				if(pr.error != null) return pr;
-				return pr.success(new VarSubNode(t, o));
+				Object o = expression(pr);
+				return pr.error != null?null:new VarSubNode(t, o);
 			} else if(currentToken.matches(TokenType.MULT_EQUAL)) {
-				pr.register_advancement();
 				advance();
-				Object o = pr.register(expression());
-				if(pr.error != null) return pr;
-				return pr.success(new VarMultNode(t, o));
+				Object o = expression(pr);
+				return pr.error != null?null:new VarMultNode(t, o);
 			} else if(currentToken.matches(TokenType.DIV_EQUAL)) {
-				pr.register_advancement();
 				advance();
-				Object o = pr.register(expression());
-				if(pr.error != null) return pr;
-				return pr.success(new VarDivNode(t, o));
+				Object o = expression(pr);
+				return pr.error != null?null:new VarDivNode(t, o);
 			}
 			
-			return pr.success(new VarAccessNode(t));
+			return new VarAccessNode(t);
 		} else if(t.matches(TokenType.LSQUARE)) {
-			Object o = pr.register(list_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			return pr.register(list_expression());
 		} else if(t.matches(TokenType.PLUS, TokenType.MINUS)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object f = pr.register(point_call());
-			if(pr.error != null) return pr;
-			return pr.success(new UnaryOperation(t, f));
+			advanceNewLines();
+			Object f = postfix(pr);
+			return pr.error != null?null:new UnaryOperation(t, f);
 		} if(t.matches("true", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			return pr.success(new NumberNode(new Token(TokenType.INT, t.seq, "1")));
+			return new NumberNode(new Token(TokenType.INT, t, "1"));
 		} if(t.matches("false", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			return pr.success(new NumberNode(new Token(TokenType.INT, t.seq, "0")));
+			return new NumberNode(new Token(TokenType.INT, t, "0"));
 		} if(t.matches("null", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			return pr.success(new NumberNode(new Token(TokenType.INT, t.seq, "0")));
+			return new NumberNode(new Token(TokenType.INT, t, "0"));
 		} else if(t.matches("if", TokenType.KEYWORD)) {
-			Object o = pr.register(if_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			return pr.register(if_expression());
 		} else if(t.matches("for", TokenType.KEYWORD)) {
-			Object o = pr.register(for_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			return pr.register(for_expression());
 		} else if(t.matches("while", TokenType.KEYWORD)) {
-			Object o = pr.register(while_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			return pr.register(while_expression());
 		} else if(t.matches("function", TokenType.KEYWORD)) {
-			Object o = pr.register(function_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			return pr.register(function_expression());
 		} else if(t.matches("object", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object o = pr.register(object_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			advanceNewLines();
+			return pr.register(object_expression());
 		} else if(t.matches("new", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object o = pr.register(new_expression());
-			if(pr.error != null) return pr;
-			return pr.success(o);
+			advanceNewLines();
+			return pr.register(new_expression());
 		} else if(t.matches("this", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			return pr.success(new ThisNode());
+			advanceNewLines();
+			return new ThisNode();
 		} else if(t.matches("include", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			ArrayList<Object> toInclude = new ArrayList<>();
 			do {
 				if(currentToken.matches(TokenType.COMMAS)) {
-					pr.register_advancement();
 					advance();
-					advanceNewLines(pr);
+					advanceNewLines();
 				}
-				Object expr = pr.register(expression());
-				if(pr.error != null) return pr;
+				Object expr = expression(pr);
+				if(pr.error != null) return null;
 				toInclude.add(expr);
 			} while(currentToken.matches(TokenType.COMMAS));
 			
-			return pr.success(new IncludeNode(toInclude.toArray()));
+			return new IncludeNode(toInclude.toArray());
 		} else if(t.matches(TokenType.LPAREN)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object ex = pr.register(expression());
-			if(pr.error != null) return pr;
-			if(currentToken.matches(TokenType.RPAREN)) {
-				pr.register_advancement();
-				advance();
-				return pr.success(ex);
-			} else return pr.failure(new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
+			advanceNewLines();
+			Object ex = expression(pr);
+			if(pr.error != null) return null;
+			if(!currentToken.matches(TokenType.RPAREN))
+				return fail(pr, new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
+			advance();
+			return ex;
 		} else if(t.matches(TokenType.LBRA)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			Object ex = pr.register(statements());
-			if(pr.error != null) return pr;
+			if(pr.error != null) return null;
 			if(!currentToken.matches(TokenType.RBRA))
-				return pr.failure(new Error.SyntaxError("Unexpected <"+t+">", t.getSeq()));
-			pr.register_advancement();
+				return fail(pr, new Error.SyntaxError("Unexpected <"+t+">", t.getSeq()));
 			advance();
-			return pr.success(ex);
+			return ex;
 		}
 		
-		return pr.failure(new Error.SyntaxError("Unexpected <"+t+">", t.getSeq()));
+		return fail(pr, new Error.SyntaxError("Unexpected <"+t+">", t.getSeq()));
+	}
+	
+	private static Object fail(ParseResult pr, Error error) {
+		pr.failure(error);
+		return null;
+	}
+	
+	private static boolean startsExpression(Token t) {
+		switch(t.type) {
+			case INT: case FLOAT: case STRING: case IDENTIFIER:
+			case LSQUARE: case PLUS: case MINUS: case LPAREN: case LBRA:
+				return true;
+			case KEYWORD:
+				switch((String) t.value) {
+					case "var": case "not": case "true": case "false": case "null": case "if": case "for":
+					case "while": case "function": case "object": case "new": case "this": case "include":
+						return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+	
+	private static boolean startsStatement(Token t) {
+		return startsExpression(t) || t.matches("return", TokenType.KEYWORD) || t.matches("continue", TokenType.KEYWORD) || t.matches("break", TokenType.KEYWORD);
 	}
 	
 	private ParseResult statements() {
@@ -598,40 +780,26 @@ public class Parser {
 		ParseResult pr = new ParseResult();
 		ArrayList<Object> statements = new ArrayList<Object>();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.RBRA))
-			return pr.success(new NumberNode(new Token(TokenType.FLOAT, null, "0")));
+			return pr.success(new NumberNode(new Token(TokenType.FLOAT, (Token) null, "0")));
 		
 		Object stat = pr.register(statement());
 		if(pr.error != null) return pr;
 		statements.add(stat);
 		
-		boolean more = true;
-		while(true) {
-			int newline_count = 0;
-			
-			while(currentToken.matches(TokenType.NLINE)) {
-				pr.register_advancement();
-				advance();
-				newline_count++;
-			}
-			if(newline_count == 0) more = false;
-			
-			if(!more) break;
-			stat = pr.try_register(statement());
-			if(pr.error != null)
-				return pr;
-			if(stat == null) {
-				reverse(pr.reverse_count);
-				more = false;
-				continue;
-			}
+		while(currentToken.matches(TokenType.NLINE)) {
+			advanceNewLines();
+			if(!startsStatement(currentToken)) break;
 			
+			stat = pr.register(statement());
+			if(pr.error != null) return pr;
 			statements.add(stat);
 		}
 		
-		debug("Parser: " + statements);
+		// printing the statements walks the whole tree, so it is only built when it is printed
+		if(JIPL.debug) debug("Parser: " + statements);
 		
 		return pr.success(new StatementsNode(statements));
 	}
@@ -642,27 +810,20 @@ public class Parser {
 		ParseResult pr = new ParseResult();
 		
 		if(currentToken.matches("return", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object expr = pr.try_register(expression());
-			if(expr == null) reverse(pr.reverse_count);
-			return pr.success(new ReturnNode(expr==null?Number.NULL:expr));
+			advanceNewLines();
+			Object expr = startsExpression(currentToken)?expression(pr):Number.NULL;
+			if(pr.error != null) return pr;
+			return pr.success(new ReturnNode(expr));
 		} else if(currentToken.matches("continue", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			return pr.success(new ContinueNode());
 		} else if(currentToken.matches("break", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			return pr.success(new BreakNode());				
 		}
 		
-		Object expr = pr.register(expression());
-		if(pr.error != null)
-			return pr;
-		
-		return pr.success(expr);
+		return pr.success(expression(pr));
 	}
 	
 	private ParseResult list_expression() {
@@ -675,28 +836,24 @@ public class Parser {
 		if(!currentToken.matches(TokenType.LSQUARE))
 			return pr.failure(new Error.SyntaxError("Expected '['", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.RSQUARE)) {
-			pr.register_advancement();
 			advance();
 		} else {
 			elementNodes.add(pr.register(expression()));
 			if(pr.error != null)
 				return pr.failure(new Error.SyntaxError("Expected ']'", currentToken.getSeq()));
 			while(currentToken.matches(TokenType.COMMAS)) {
-				pr.register_advancement();
 				advance();
 				elementNodes.add(pr.register(expression()));
 				if(pr.error != null) return pr;
 			}
-			advanceNewLines(pr);
+			advanceNewLines();
 			if(!currentToken.matches(TokenType.RSQUARE))
 				return pr.failure(new Error.SyntaxError("Expected ']'", currentToken.getSeq()));
-			pr.register_advancement();
 			advance();
 		}
 		
@@ -717,31 +874,27 @@ public class Parser {
 		if(!currentToken.matches(keyword, TokenType.KEYWORD))
 			return pr.failure(new Error.SyntaxError("Expected '"+keyword+"'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		Object condition = pr.register(expression());
 		if(pr.error != null) return pr;
 		
 		if(currentToken.matches(TokenType.COLON)) {
 //				return pr.failure(new Error.SyntaxError("Expected ':'", currentToken.getSeq()));
-			pr.register_advancement();
 			advance();
 		}
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.LBRA)) {
-			pr.register_advancement();
 			advance();
 			Object statements = pr.register(statements());
 			if(pr.error != null) return pr;
 			node.cases.add(new CaseDataNode(condition, statements, true));
 			
 			if(currentToken.matches(TokenType.RBRA)) {
-				pr.register_advancement();
 				advance();
 			} else {
 				return pr.failure(new SyntaxError("Expected '}'", currentToken.getSeq()));
@@ -751,7 +904,7 @@ public class Parser {
 			node.cases.addAll(tempnode.cases);
 			node.else_case = tempnode.else_case;
 		} else {
-			advanceNewLines(pr);
+			advanceNewLines();
 			Object expr = pr.register(statement());
 			if(pr.error != null) return pr;
 			node.cases.add(new CaseDataNode(condition, expr, false));
@@ -769,9 +922,12 @@ public class Parser {
 		ParseResult pr = new ParseResult();
 		IfNode node = new IfNode(new ArrayList<CaseDataNode>(), null);
 		
-		advanceNewLines(pr);
+		// the newlines only belong to the if when an elseif or an else follows them
+		Token next = peekPastNewLines();
+		if(!next.matches("elseif", TokenType.KEYWORD) && !next.matches("else", TokenType.KEYWORD))
+			return pr.success(node);
 		
-		boolean reverse = true;
+		advanceNewLines();
 		
 		if(currentToken.matches("elseif", TokenType.KEYWORD)) {
 			Object o = pr.register(if_expression_b());
@@ -779,16 +935,12 @@ public class Parser {
 			IfNode tempnode = (IfNode) o;
 			node.cases = tempnode.cases;
 			node.else_case = tempnode.else_case;
-			reverse = false;
 		} else {
 			Object o = pr.register(if_expression_c());
 			if(pr.error != null) return pr;
 			node.else_case = (CaseDataNode) o;
-			if(o != null) reverse = false;
 		}
 		
-		if(reverse) reverse(pr.advance_count);
-		
 		return pr.success(node);
 	}
 
@@ -801,19 +953,16 @@ public class Parser {
 		Object else_case = null;
 		
 		if(currentToken.matches("else", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			
 			if(currentToken.matches(TokenType.COLON)) {
 //					return pr.failure(new Error.SyntaxError("Expected ':'", currentToken.getSeq()));
-				pr.register_advancement();
 				advance();
 			}
 			
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			if(currentToken.matches(TokenType.LBRA)) {
-				pr.register_advancement();
 				advance();
 				
 				Object statements = pr.register(statements());
@@ -822,11 +971,10 @@ public class Parser {
 				else_case = new CaseDataNode(null, statements, true);
 				
 				if(currentToken.matches(TokenType.RBRA)) {
-					pr.register_advancement();
 					advance();
 				} else return pr.failure(new Error.SyntaxError("Expected '}'", currentToken.getSeq()));
 			} else {
-				advanceNewLines(pr);
+				advanceNewLines();
 				Object expr = pr.register(statement());
 				if(pr.error != null) return pr;
 				else_case = new CaseDataNode(null, expr, false);
@@ -844,51 +992,44 @@ public class Parser {
 		if(!currentToken.matches("for", TokenType.KEYWORD))
 			return pr.failure(new Error.SyntaxError("Expected 'for'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(!currentToken.matches(TokenType.IDENTIFIER))
 			return pr.failure(new Error.SyntaxError("Expected identifier", currentToken.getSeq()));
 		
 		Token varName = currentToken;
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches("in", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			
 			Object array = pr.register(expression());
 			if(pr.error != null) return pr;
 			
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			if(currentToken.matches(TokenType.COLON)) {
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 			}
 			
 			if(currentToken.matches(TokenType.LBRA)) {
-				pr.register_advancement();
 				advance();
 
 				Object body = pr.register(statements());
 				if(pr.error != null) return pr;
 
-//				pr.register_advancement();
 //				advance();
-//				advanceNewLines(pr);
+//				advanceNewLines();
 				
 				if(!currentToken.matches(TokenType.RBRA))
 					return pr.failure(new Error.SyntaxError("Expected '}' FORIN", currentToken.getSeq()));
 				
-				pr.register_advancement();
 				advance();
 				
 				return pr.success(new ForInNode(varName, array, body, true));
@@ -900,56 +1041,51 @@ public class Parser {
 			return pr.success(new ForInNode(varName, array, body, false));
 		}
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(!currentToken.matches(TokenType.EQUALS))
 			return pr.failure(new Error.SyntaxError("Expected '='", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		Object start = pr.register(expression());
 		if(pr.error != null) return pr;
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(!currentToken.matches("to", TokenType.KEYWORD))
 			return pr.failure(new Error.SyntaxError("Expected 'to'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		Object end = pr.register(expression());
 		if(pr.error != null) return pr;
 		
 		Object by = null;
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches("by", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			by = pr.register(expression());
 			if(pr.error != null) return pr;
 		}
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.COLON)) {
 //				return pr.failure(new Error.SyntaxError("Expected ':'", currentToken.getSeq()));
 			
-			pr.register_advancement();
 			advance();
 		}
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.LBRA)) {
-			pr.register_advancement();
 			advance();
 
 			Object body = pr.register(statements());
@@ -958,7 +1094,6 @@ public class Parser {
 			if(!currentToken.matches(TokenType.RBRA))
 				return pr.failure(new Error.SyntaxError("Expected '}'", currentToken.getSeq()));
 			
-			pr.register_advancement();
 			advance();
 			
 			return pr.success(new ForNode(varName, start, end, by, body, true));
@@ -978,21 +1113,18 @@ public class Parser {
 		if(!currentToken.matches("while", TokenType.KEYWORD))
 			return pr.failure(new Error.SyntaxError("Expected 'while'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		Object condition = pr.register(expression());
 		if(pr.error != null) return pr;
 		
 		if(currentToken.matches(TokenType.COLON)) {
-			pr.register_advancement();
 			advance();
 		}
 		
 		if(currentToken.matches(TokenType.LBRA)) {
-			pr.register_advancement();
 			advance();
 			
 			Object body = pr.register(statements());
@@ -1001,7 +1133,6 @@ public class Parser {
 			if(!currentToken.matches(TokenType.RBRA))
 				return pr.failure(new Error.SyntaxError("Expected '}'", currentToken.getSeq()));
 			
-			pr.register_advancement();
 			advance();
 			
 			return pr.success(new WhileNode(condition, body, true));
@@ -1021,62 +1152,54 @@ public class Parser {
 		if(!currentToken.matches("function", TokenType.KEYWORD))
 			return pr.failure(new Error.SyntaxError("Expected 'function'", currentToken.getSeq()));
 
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		Token function_name = null;
 		if(currentToken.matches(TokenType.IDENTIFIER)) {
 			function_name = currentToken;
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			if(!currentToken.matches(TokenType.LPAREN))
 				return pr.failure(new Error.SyntaxError("Expected '('", currentToken.getSeq()));
 		} else {
-			advanceNewLines(pr);
+			advanceNewLines();
 			if(!currentToken.matches(TokenType.LPAREN))
 				return pr.failure(new Error.SyntaxError("Expected '(' or identifier", currentToken.getSeq()));
 		}
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		ArrayList<Token> temp_tokens = new ArrayList<Token>();
 		
 		if(currentToken.matches(TokenType.IDENTIFIER)) {
 			temp_tokens.add(currentToken);
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			while(currentToken.matches(TokenType.COMMAS)) {
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 				if(!currentToken.matches(TokenType.IDENTIFIER))
 					return pr.failure(new Error.SyntaxError("Expected identifier", currentToken.getSeq()));
 				temp_tokens.add(currentToken);
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 			}
 			if(!currentToken.matches(TokenType.RPAREN))
 				return pr.failure(new Error.SyntaxError("Expected ',' or ')'", currentToken.getSeq()));
 		} else {
-			advanceNewLines(pr);
+			advanceNewLines();
 			if(!currentToken.matches(TokenType.RPAREN))
 				return pr.failure(new Error.SyntaxError("Expected identifier or ')'", currentToken.getSeq()));
 		}
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(currentToken.matches(TokenType.COLON)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			Object body = pr.register(statement());
 			if(pr.error != null) return pr;
@@ -1086,9 +1209,8 @@ public class Parser {
 			if(!currentToken.matches(TokenType.LBRA))
 				return pr.failure(new SyntaxError("Expected '{'", currentToken.getSeq()));
 			
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			Object body = pr.register(statements());
 			if(pr.error != null) return pr;
@@ -1096,7 +1218,6 @@ public class Parser {
 			if(!currentToken.matches(TokenType.RBRA))
 				return pr.failure(new SyntaxError("Function: expected '}'", currentToken.getSeq()));
 			
-			pr.register_advancement();
 			advance();
 			
 			return pr.success(new FunctionDefNode(function_name, body, false, temp_tokens.toArray(new Token[temp_tokens.size()])));
@@ -1114,58 +1235,49 @@ public class Parser {
 		
 		Token name = currentToken;
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(!currentToken.matches(TokenType.LPAREN))
 			return pr.failure(new Error.SyntaxError("Expected '('.", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		ArrayList<Token> args = new ArrayList<Token>();
 		if(currentToken.matches(TokenType.IDENTIFIER)) {
 			args.add(currentToken);
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			while(currentToken.matches(TokenType.COMMAS)) {
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 				if(!currentToken.matches(TokenType.IDENTIFIER))
 					return pr.failure(new Error.SyntaxError("Expected identifier", currentToken.getSeq()));
 				args.add(currentToken);
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 			}
 		}
 		
 		if(!currentToken.matches(TokenType.RPAREN))
 			return pr.failure(new Error.SyntaxError("Expected ')'.", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
 		Object superClass = null;
 		if(currentToken.matches("extends", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
 			if(!currentToken.matches(TokenType.IDENTIFIER))
 				return pr.failure(new SyntaxError("Expected identifier", currentToken.getSeq()));
 			superClass = new VarAccessNode(currentToken);
 			
-			pr.register_advancement();
 			advance();
 		}
 		
 		if(!currentToken.matches(TokenType.LBRA))
 			return pr.failure(new SyntaxError("Expected '{'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
 		Object body = pr.register(statements());
@@ -1174,7 +1286,6 @@ public class Parser {
 		if(!currentToken.matches(TokenType.RBRA))
 			return pr.failure(new SyntaxError("Expected '}'", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
 		
 		return pr.success(new ObjectDefNode(name, args.toArray(new Token[args.size()]), body, superClass));
@@ -1188,21 +1299,18 @@ public class Parser {
 		
 		Token name = currentToken;
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		if(!currentToken.matches(TokenType.LPAREN))
 			return pr.failure(new Error.SyntaxError("Expected '('", currentToken.getSeq()));
 		
-		pr.register_advancement();
 		advance();
-		advanceNewLines(pr);
+		advanceNewLines();
 		
 		ArrayList<Object> args = new ArrayList<Object>();
 		
 		if(currentToken.matches(TokenType.RPAREN)) {
-			pr.register_advancement();
 			advance();
 		} else {
 			Object expr1 = pr.register(expression());
@@ -1210,240 +1318,163 @@ public class Parser {
 			args.add(expr1);
 			
 			while(currentToken.matches(TokenType.COMMAS)) {
-				pr.register_advancement();
 				advance();
-				advanceNewLines(pr);
+				advanceNewLines();
 				args.add(pr.register(expression()));
 				if(pr.error != null) return pr;
 			}
 			
 			if(!currentToken.matches(TokenType.RPAREN))
 				return pr.failure(new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
-			pr.register_advancement();
 			advance();
 		}
 		
 		return pr.success(new InstantiateNode(new VarAccessNode(name), args.toArray()));
 	}
 	
-	private ParseResult point_call() {
-		ParseResult pr = new ParseResult();
+	private Object postfix(ParseResult pr) {
+		Object atom = call(pr);
+		if(pr.error != null || !currentToken.matches(TokenType.POINT)) return atom;
 		
-		Object atom = pr.register(call());
-		if(pr.error != null) return pr;
+		ArrayList<Object> calls = new ArrayList<Object>();
+		calls.add(atom);
 		
-		if(currentToken.matches(TokenType.POINT)) {
-			ArrayList<Object> calls = new ArrayList<Object>();
-			calls.add(atom);
-			
-			while(currentToken.matches(TokenType.POINT)) {
-				pr.register_advancement();
+		while(currentToken.matches(TokenType.POINT)) {
+			advance();
+			advanceNewLines();
+			if(currentToken.matches(TokenType.LBRA)) {
 				advance();
-				advanceNewLines(pr);
-				if(currentToken.matches(TokenType.LBRA)) {
-					pr.register_advancement();
-					advance();
-					advanceNewLines(pr);
-					Object obj = pr.register(statements());
-					if(pr.error != null) return pr;
-					if(!currentToken.matches(TokenType.RBRA))
-						return pr.failure(new SyntaxError("Expected '}'", currentToken.getSeq()));
-//						pr.register_advancement();
-//						advance();
-					advanceNewLines(pr);
-					calls.add(obj);
-				} else {
-					Object obj = pr.register(call());
-					if(pr.error != null) return pr;
-					calls.add(obj);
-				}
+				advanceNewLines();
+				Object obj = pr.register(statements());
+				if(pr.error != null) return null;
+				if(!currentToken.matches(TokenType.RBRA))
+					return fail(pr, new SyntaxError("Expected '}'", currentToken.getSeq()));
+//					advance();
+				advanceNewLines();
+				calls.add(obj);
+			} else {
+				Object obj = call(pr);
+				if(pr.error != null) return null;
+				calls.add(obj);
 			}
-			
-			return pr.success(new PointAccessNode(calls.toArray()));
 		}
 		
-		return pr.success(atom);
+		return new PointAccessNode(calls.toArray());
 	}
 	
-	private ParseResult call() {
-		ParseResult pr = new ParseResult();
-		
+	private Object call(ParseResult pr) {
 		Token associatedToken = currentToken;
 		
-		Object atom = pr.register(factor());
-		if(pr.error != null) return pr;
+		Object atom = atom(pr);
+		if(pr.error != null || !currentToken.matches(TokenType.LPAREN)) return atom;
+		
+		if(JIPL.debug) debug("Parser: Call "+atom);
+		advance();
+		advanceNewLines();
 		
-		if(currentToken.matches(TokenType.LPAREN)) {
-			debug("Parser: Call "+atom);
-			pr.register_advancement();
+		ArrayList<Object> args = new ArrayList<Object>();
+		
+		if(currentToken.matches(TokenType.RPAREN)) {
 			advance();
-			advanceNewLines(pr);
-			
-			ArrayList<Object> args = new ArrayList<Object>();
-			
-			if(currentToken.matches(TokenType.RPAREN)) {
-				pr.register_advancement();
-				advance();
-			} else {
-				args.add(pr.register(expression()));
-				if(pr.error != null)
-					return pr.failure(new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
-				while(currentToken.matches(TokenType.COMMAS)) {
-					pr.register_advancement();
-					advance();
-					advanceNewLines(pr);
-					args.add(pr.register(expression()));
-					if(pr.error != null) return pr;
-				}
-				if(!currentToken.matches(TokenType.RPAREN))
-					return pr.failure(new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
-				pr.register_advancement();
+		} else {
+			args.add(expression(pr));
+			if(pr.error != null)
+				return fail(pr, new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
+			while(currentToken.matches(TokenType.COMMAS)) {
 				advance();
+				advanceNewLines();
+				args.add(expression(pr));
+				if(pr.error != null) return null;
 			}
-			if(atom instanceof VarAccessNode)
-				((VarAccessNode) atom).name = new Token(TokenType.IDENTIFIER, ((VarAccessNode) atom).name.getSeq(), ((VarAccessNode) atom).name.value);
-			return pr.success(new CallNode(associatedToken, atom, args.toArray(new Object[args.size()])));
-		}
-		
-		return pr.success(atom);
-	}
-	
-	private ParseResult term() {
-		ParseResult pr = new ParseResult();
-		
-		Object left = pr.register(point_call());
-		if(pr.error != null) return pr;
-		
-		while(currentToken.matches(TokenType.MULT, TokenType.DIV)) {
-			Token op = currentToken;
-			pr.register_advancement();
+			if(!currentToken.matches(TokenType.RPAREN))
+				return fail(pr, new Error.SyntaxError("Expected ')'", currentToken.getSeq()));
 			advance();
-			advanceNewLines(pr);
-			Object right = pr.register(point_call());
-			if(pr.error != null) return pr;
-			left = new BinaryOperation(left, op, right);
 		}
-		
-		return pr.success(left);
+		if(atom instanceof VarAccessNode)
+			((VarAccessNode) atom).name = new Token(TokenType.IDENTIFIER, ((VarAccessNode) atom).name, ((VarAccessNode) atom).name.value);
+		return new CallNode(associatedToken, atom, args.toArray(new Object[args.size()]));
 	}
 	
-	private ParseResult comp_expression() {
-		ParseResult pr = new ParseResult();
-		
-		if(currentToken.matches("not", TokenType.KEYWORD)) {
-			Token tok = currentToken;
-			pr.register_advancement();
-			advance();
-			advanceNewLines(pr);
-			Object o = pr.register(comp_expression());
-			if(pr.error != null) return pr;
-			
-			return pr.success(new UnaryOperation(tok, o));
+	private static int precedence(Token t) {
+		switch(t.type) {
+			case MULT: case DIV: return PRODUCT;
+			case PLUS: case MINUS: return SUM;
+			case DOUBLE_EQUALS: case NOT_EQUALS: case LESS: case LESS_EQUALS: case GREATER: case GREATER_EQUALS: return COMPARISON;
+			case KEYWORD: return t.value.equals("and") || t.value.equals("or")?LOGICAL:0;
+			default: return 0;
 		}
-		
-		Object o = pr.register(comp_arith());
-		if(pr.error != null) return pr;
-		
-		return pr.success(o);
 	}
 	
-	private ParseResult comp_binop() {
-		ParseResult pr = new ParseResult();
-		
-		Object left = pr.register(comp_expression());
-		if(pr.error != null) return pr;
-		
-		while(currentToken.matches("and", TokenType.KEYWORD) || currentToken.matches("or", TokenType.KEYWORD)) {
-			Token op = currentToken;
-			pr.register_advancement();
+	/**
+	 * Parses the operators binding at least as tightly as min, climbing to the tighter levels through the right operands.
+	 * A 'not' only starts an operand of the logical level and covers a whole comparison.
+	 */
+	private Object binary(ParseResult pr, int min) {
+		Object left;
+		if(min <= COMPARISON && currentToken.matches("not", TokenType.KEYWORD)) {
+			Token tok = currentToken;
 			advance();
-			advanceNewLines(pr);
-			Object right = pr.register(comp_expression());
-			if(pr.error != null) return pr;
-			left = new BinaryOperation(left, op, right);
+			advanceNewLines();
+			Object o = binary(pr, COMPARISON);
+			if(pr.error != null) return null;
+			left = new UnaryOperation(tok, o);
+		} else {
+			left = postfix(pr);
+			if(pr.error != null) return null;
 		}
 		
-		return pr.success(left);
-	}
-	
-	private ParseResult comp_arith() {
-		ParseResult pr = new ParseResult();
-		
-		Object left = pr.register(arithmetic_expression());
-		if(pr.error != null) return pr;
-		
-		while(currentToken.matches(TokenType.DOUBLE_EQUALS, TokenType.NOT_EQUALS, TokenType.LESS, TokenType.LESS_EQUALS, TokenType.GREATER, TokenType.GREATER_EQUALS)) {
+		for(int p = precedence(currentToken); p >= min && p > 0; p = precedence(currentToken)) {
 			Token op = currentToken;
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
-			Object right = pr.register(arithmetic_expression());
-			if(pr.error != null) return pr;
+			advanceNewLines();
+			Object right = binary(pr, p+1);
+			if(pr.error != null) return null;
 			left = new BinaryOperation(left, op, right);
 		}
 		
-		return pr.success(left);
+		return left;
 	}
 	
-	private ParseResult arithmetic_expression() {
+	private ParseResult expression() {
 		ParseResult pr = new ParseResult();
-		
-		Object left = pr.register(term());
-		if(pr.error != null) return pr;
-		
-		while(currentToken.matches(TokenType.PLUS, TokenType.MINUS)) {
-			Token op = currentToken;
-			pr.register_advancement();
-			advance();
-			advanceNewLines(pr);
-			Object right = pr.register(term());
-			if(pr.error != null) return pr;
-			left = new BinaryOperation(left, op, right);
-		}
-		
-		return pr.success(left);
+		return pr.success(expression(pr));
 	}
 	
-	private ParseResult expression() {
+	private Object expression(ParseResult pr) {
 		debug("Parser: expression");
 		
-		ParseResult pr = new ParseResult();
-		
 		if(currentToken.matches("var", TokenType.KEYWORD)) {
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			if(!currentToken.matches(TokenType.IDENTIFIER)) 
-				return pr.failure(new Error.SyntaxError("Expected identifier for the variable", currentToken.getSeq()));
+				return fail(pr, new Error.SyntaxError("Expected identifier for the variable", currentToken.getSeq()));
 			
 			Token vname = currentToken;
 			
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
 			if(!currentToken.matches(TokenType.EQUALS))
-				return pr.failure(new Error.SyntaxError("Expected '='", currentToken.getSeq()));
+				return fail(pr, new Error.SyntaxError("Expected '='", currentToken.getSeq()));
 				
-			pr.register_advancement();
 			advance();
-			advanceNewLines(pr);
+			advanceNewLines();
 			
-			Object o = pr.register(expression());
-			if(pr.error != null) return pr;
+			Object o = expression(pr);
+			if(pr.error != null) return null;
 			
-			return pr.success(new VarAssignNode(vname, o));
+			return new VarAssignNode(vname, o);
 		}
 		
-		Object o = pr.register(comp_binop());
-		if(pr.error != null) return pr;
-		
-		return pr.success(o);
+		return binary(pr, LOGICAL);
 	}
 	
 	public Object parse() {
 		ParseResult pr = (ParseResult) statements();
+		// the code left after the statements or a syntax error is still lexed, so an illegal character in it is reported first, as when the whole code was lexed beforehand
+		while(tokens.next() != null);
+		if(pr.error == null) new Resolver().resolve(pr.node);
 		return pr;
 	}
 	
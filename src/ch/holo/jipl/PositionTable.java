@@ -0,0 +1,66 @@
+package ch.holo.jipl;
+
+import java.io.Serializable;
+
+/**
+ * The positions of one compilation unit: its file name, kept once for all of its tokens, and the offsets of the newlines counted by the {@link Lexer}.
+ * A token only keeps an offset and a size into it, a {@link Sequence} is built from them when an error has to be reported.
+ */
+public class PositionTable implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	protected final String file;
+	private int[] newlines = new int[64];
+	private int count;
+	
+	public PositionTable(String file) {
+		this.file = file;
+	}
+	
+	public String getFile() { return file; }
+	
+	public void newline(int offset) {
+		if(count == newlines.length) {
+			int[] grown = new int[count*2];
+			System.arraycopy(newlines, 0, grown, 0, count);
+			newlines = grown;
+		}
+		newlines[count++] = offset;
+	}
+	
+	// the number of newlines counted up to offset, included
+	public int line(int offset) {
+		int low = 0, high = count;
+		while(low < high) {
+			int mid = (low+high) >>> 1;
+			if(newlines[mid] <= offset) low = mid+1;
+			else high = mid;
+		}
+		return low;
+	}
+	
+	public Sequence sequence(int offset, int size) {
+		return new Sequence(line(offset), offset, size, file);
+	}
+	
+	// the table of a token built from a Sequence rather than by the lexer, it only knows that one place
+	public static PositionTable of(Sequence seq) {
+		return new Fixed(seq);
+	}
+	
+	private static class Fixed extends PositionTable {
+		
+		private static final long serialVersionUID = 1L;
+		private final Sequence seq;
+		
+		private Fixed(Sequence seq) {
+			super(seq.getFile());
+			this.seq = seq;
+		}
+		
+		public int line(int offset) { return seq.getLine()-1; }
+		public Sequence sequence(int offset, int size) { return seq; }
+	}
+	
+}
@@ -0,0 +1,430 @@
+package ch.holo.jipl;
+
+import java.util.HashMap;
+
+import ch.holo.jipl.Interpreter.GlobalCache;
+import ch.holo.jipl.Parser.BinaryOperation;
+import ch.holo.jipl.Parser.CallNode;
+import ch.holo.jipl.Parser.CaseDataNode;
+import ch.holo.jipl.Parser.ForInNode;
+import ch.holo.jipl.Parser.ForNode;
+import ch.holo.jipl.Parser.FunctionDefNode;
+import ch.holo.jipl.Parser.IfNode;
+import ch.holo.jipl.Parser.IncludeNode;
+import ch.holo.jipl.Parser.InstantiateNode;
+import ch.holo.jipl.Parser.ListNode;
+import ch.holo.jipl.Parser.NumberNode;
+import ch.holo.jipl.Parser.ObjectDefNode;
+import ch.holo.jipl.Parser.PointAccessNode;
+import ch.holo.jipl.Parser.ReturnNode;
+import ch.holo.jipl.Parser.StatementsNode;
+import ch.holo.jipl.Parser.ThisNode;
+import ch.holo.jipl.Parser.UnaryOperation;
+import ch.holo.jipl.Parser.VarAccessNode;
+import ch.holo.jipl.Parser.VarAddNode;
+import ch.holo.jipl.Parser.VarAssignNode;
+import ch.holo.jipl.Parser.VarDivNode;
+import ch.holo.jipl.Parser.VarModifyNode;
+import ch.holo.jipl.Parser.VarMultNode;
+import ch.holo.jipl.Parser.VarSubNode;
+import ch.holo.jipl.Parser.WhileNode;
+import ch.holo.jipl.Token.TokenType;
+
+/**
+ * Gives the locals of every function a (depth, slot) address in an {@link Interpreter.Frame}.
+ * Globals, object bodies and functions that expose their scope by name (this, include, jipl, d_alloc...)
+ * or to the body of an object they instantiate, which runs under the context of the caller,
+ * keep using the dynamic {@link Context} lookups.
+ */
+public class Resolver {
+
+	private static final int DYNAMIC = -1;
+	static final String[] DYNAMIC_FUNCTIONS = {"jipl", "d_alloc"};
+
+	private static class FunctionScope {
+		protected boolean resolved;
+		protected int size = 0;
+
+		public FunctionScope(boolean resolved) { this.resolved = resolved; }
+	}
+
+	private static class BlockScope {
+		protected HashMap<String, Integer> names = new HashMap<>();
+		protected BlockScope parent;
+		protected FunctionScope function;
+
+		public BlockScope(BlockScope parent, FunctionScope function) {
+			this.parent = parent;
+			this.function = function;
+		}
+	}
+
+	private BlockScope scope;
+
+	public void resolve(Object node) {
+		scope = new BlockScope(null, new FunctionScope(false));
+		discard(node);
+		visit(node);
+	}
+
+	private void visit(Object node) {
+		if(node instanceof VarAccessNode) {
+			VarAccessNode n = (VarAccessNode) node;
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+			else n.global = new GlobalCache();
+		} else if(node instanceof VarAssignNode) {
+			VarAssignNode n = (VarAssignNode) node;
+			visit(n.expression);
+			n.slot = declare((String) n.name.getValue());
+			if(n.slot != DYNAMIC) n.depth = 0;
+		} else if(node instanceof VarModifyNode) {
+			VarModifyNode n = (VarModifyNode) node;
+			visit(n.node);
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+		} else if(node instanceof VarAddNode) {
+			VarAddNode n = (VarAddNode) node;
+			visit(n.node);
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+		} else if(node instanceof VarSubNode) {
+			VarSubNode n = (VarSubNode) node;
+			visit(n.node);
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+		} else if(node instanceof VarMultNode) {
+			VarMultNode n = (VarMultNode) node;
+			visit(n.node);
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+		} else if(node instanceof VarDivNode) {
+			VarDivNode n = (VarDivNode) node;
+			visit(n.node);
+			int[] address = lookup((String) n.name.getValue());
+			if(address != null) { n.depth = address[0]; n.slot = address[1]; }
+		} else if(node instanceof BinaryOperation) {
+			visit(((BinaryOperation) node).leftNode);
+			visit(((BinaryOperation) node).rightNode);
+		} else if(node instanceof UnaryOperation) {
+			visit(((UnaryOperation) node).node);
+		} else if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			for(CaseDataNode cdn:n.cases) {
+				visit(cdn.condition);
+				cdn.scoped = visitBlock(cdn.statements);
+				if(cdn.shouldReturnNull) discard(cdn.statements);
+			}
+			if(n.else_case != null) {
+				n.else_case.scoped = visitBlock(n.else_case.statements);
+				if(n.else_case.shouldReturnNull) discard(n.else_case.statements);
+			}
+		} else if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			visit(n.start);
+			visit(n.end);
+			visit(n.step);
+			scope = new BlockScope(scope, scope.function);
+			n.slot = declare((String) n.varName.getValue());
+			visitStatements(n.body);
+			n.scoped = needsScope(n.body);
+			n.unboxed = n.slot >= 0 && !escapes((String) n.varName.getValue(), n.body);
+			scope = scope.parent;
+			if(!n.collects()) discard(n.body);
+		} else if(node instanceof ForInNode) {
+			ForInNode n = (ForInNode) node;
+			visit(n.array);
+			scope = new BlockScope(scope, scope.function);
+			n.slot = declare((String) n.varName.getValue());
+			visitStatements(n.body);
+			n.scoped = needsScope(n.body);
+			scope = scope.parent;
+			if(!n.collects()) discard(n.body);
+		} else if(node instanceof WhileNode) {
+			WhileNode n = (WhileNode) node;
+			visit(n.condition);
+			n.scoped = visitBlock(n.body);
+			if(!n.collects()) discard(n.body);
+		} else if(node instanceof FunctionDefNode) {
+			visitFunction((FunctionDefNode) node);
+		} else if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			visit(n.nodeToCall);
+			for(Object arg:n.args) visit(arg);
+		} else if(node instanceof ListNode) {
+			for(Object o:((ListNode) node).elementNodes) visit(o);
+		} else if(node instanceof StatementsNode) {
+			visitStatements(node);
+		} else if(node instanceof ReturnNode) {
+			visit(((ReturnNode) node).toReturn);
+		} else if(node instanceof PointAccessNode) {
+			Object[] nodes = ((PointAccessNode) node).nodes;
+			visit(nodes[0]);
+			for(int i = 1; i < nodes.length; i++) visitMember(nodes[i]);
+		} else if(node instanceof InstantiateNode) {
+			InstantiateNode n = (InstantiateNode) node;
+			visit(n.nodeToCall);
+			for(Object arg:n.args) visit(arg);
+		} else if(node instanceof ObjectDefNode) {
+			ObjectDefNode n = (ObjectDefNode) node;
+			visit(n.superClass);
+			declareDynamic((String) n.name.getValue());
+
+			BlockScope outer = scope;
+			scope = new BlockScope(null, new FunctionScope(false));
+			visitStatements(n.body);
+			scope = outer;
+			discard(n.body);
+			discard(n.statements);
+		} else if(node instanceof IncludeNode) {
+			for(Object o:((IncludeNode) node).toInclude) visit(o);
+		}
+	}
+
+	private boolean visitBlock(Object node) {
+		scope = new BlockScope(scope, scope.function);
+		visitStatements(node);
+		boolean scoped = needsScope(node);
+		scope = scope.parent;
+		return scoped;
+	}
+
+	// a block only gets its own Context when something can be stored in it or can observe it
+	private boolean needsScope(Object body) {
+		return scope.names.containsValue(DYNAMIC) || exposesScope(body, true);
+	}
+
+	private void visitStatements(Object node) {
+		if(node instanceof StatementsNode) for(Object o:((StatementsNode) node).elementNodes) {
+			discard(o);
+			visit(o);
+		} else visit(node);
+	}
+
+	// marks a node whose value is never read, so loops and blocks skip building their result
+	private static void discard(Object node) {
+		if(node instanceof StatementsNode) ((StatementsNode) node).discarded = true;
+		else if(node instanceof ForNode) {
+			((ForNode) node).discarded = true;
+			discard(((ForNode) node).body);
+		} else if(node instanceof ForInNode) {
+			((ForInNode) node).discarded = true;
+			discard(((ForInNode) node).body);
+		} else if(node instanceof WhileNode) {
+			((WhileNode) node).discarded = true;
+			discard(((WhileNode) node).body);
+		} else if(node instanceof IfNode) {
+			for(CaseDataNode cdn:((IfNode) node).cases) discard(cdn.statements);
+			if(((IfNode) node).else_case != null) discard(((IfNode) node).else_case.statements);
+		}
+	}
+
+	// a call whose value is directly returned does not need the caller anymore, see Interpreter.TailCall
+	private static void markTailCalls(Object node) {
+		if(node instanceof ReturnNode) {
+			if(((ReturnNode) node).toReturn instanceof CallNode) ((CallNode) ((ReturnNode) node).toReturn).tail = true;
+		} else if(node instanceof StatementsNode) {
+			for(Object o:((StatementsNode) node).elementNodes) markTailCalls(o);
+		} else if(node instanceof IfNode) {
+			for(CaseDataNode cdn:((IfNode) node).cases) markTailCalls(cdn.statements);
+			if(((IfNode) node).else_case != null) markTailCalls(((IfNode) node).else_case.statements);
+		} else if(node instanceof ForNode) markTailCalls(((ForNode) node).body);
+		else if(node instanceof ForInNode) markTailCalls(((ForInNode) node).body);
+		else if(node instanceof WhileNode) markTailCalls(((WhileNode) node).body);
+	}
+
+	private void visitMember(Object node) {
+		if(node instanceof VarAccessNode) return;
+		if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			if(!(n.nodeToCall instanceof VarAccessNode)) visit(n.nodeToCall);
+			for(Object arg:n.args) visit(arg);
+		} else if(node instanceof VarModifyNode) visit(((VarModifyNode) node).node);
+		else if(node instanceof VarAddNode) visit(((VarAddNode) node).node);
+		else if(node instanceof VarSubNode) visit(((VarSubNode) node).node);
+		else if(node instanceof VarMultNode) visit(((VarMultNode) node).node);
+		else if(node instanceof VarDivNode) visit(((VarDivNode) node).node);
+		else visit(node);
+	}
+
+	private void visitFunction(FunctionDefNode node) {
+		if(node.name != null) declareDynamic((String) node.name.getValue());
+
+		FunctionScope function = new FunctionScope(!exposesScope(node.body, !node.shouldAutoReturn));
+		scope = new BlockScope(scope, function);
+
+		for(Token arg:node.args) {
+			if(function.resolved) scope.names.put((String) arg.getValue(), function.size++);
+			else scope.names.put((String) arg.getValue(), DYNAMIC);
+		}
+		visitStatements(node.body);
+		if(!node.shouldAutoReturn) discard(node.body);
+		if(node.shouldAutoReturn && node.body instanceof CallNode) ((CallNode) node.body).tail = true;
+		else if(!node.shouldAutoReturn) markTailCalls(node.body);
+
+		node.frameSize = function.resolved?function.size:-1;
+		scope = scope.parent;
+	}
+
+	private int declare(String name) {
+		if(!scope.function.resolved) {
+			scope.names.put(name, DYNAMIC);
+			return DYNAMIC;
+		}
+		Integer slot = scope.names.get(name);
+		if(slot != null && slot != DYNAMIC) return slot;
+		scope.names.put(name, scope.function.size);
+		return scope.function.size++;
+	}
+
+	private void declareDynamic(String name) {
+		scope.names.put(name, DYNAMIC);
+	}
+
+	private int[] lookup(String name) {
+		int depth = 0;
+		FunctionScope function = scope.function;
+		for(BlockScope s = scope; s != null; s = s.parent) {
+			if(s.function != function) {
+				if(function.resolved) depth++;
+				function = s.function;
+			}
+			Integer slot = s.names.get(name);
+			if(slot != null) return slot == DYNAMIC?null:new int[] {depth, slot};
+		}
+		return null;
+	}
+
+	private static boolean exposesScope(Object node, boolean statementsAllowed) {
+		if(node instanceof ThisNode || node instanceof IncludeNode || node instanceof ObjectDefNode || node instanceof InstantiateNode) return true;
+		if(node instanceof VarAccessNode) {
+			for(String s:DYNAMIC_FUNCTIONS)
+				if(s.equals(((VarAccessNode) node).name.getValue())) return true;
+			return false;
+		}
+		if(node instanceof StatementsNode) {
+			if(!statementsAllowed) return true;
+			for(Object o:((StatementsNode) node).elementNodes)
+				if(exposesScope(o, false)) return true;
+			return false;
+		}
+		if(node instanceof VarAssignNode) return exposesScope(((VarAssignNode) node).expression, false);
+		if(node instanceof VarModifyNode) return exposesScope(((VarModifyNode) node).node, false);
+		if(node instanceof VarAddNode) return exposesScope(((VarAddNode) node).node, false);
+		if(node instanceof VarSubNode) return exposesScope(((VarSubNode) node).node, false);
+		if(node instanceof VarMultNode) return exposesScope(((VarMultNode) node).node, false);
+		if(node instanceof VarDivNode) return exposesScope(((VarDivNode) node).node, false);
+		if(node instanceof BinaryOperation) return exposesScope(((BinaryOperation) node).leftNode, false) || exposesScope(((BinaryOperation) node).rightNode, false);
+		if(node instanceof UnaryOperation) return exposesScope(((UnaryOperation) node).node, false);
+		if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			for(CaseDataNode cdn:n.cases)
+				if(exposesScope(cdn.condition, false) || exposesScope(cdn.statements, true)) return true;
+			return n.else_case != null && exposesScope(n.else_case.statements, true);
+		}
+		if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			return exposesScope(n.start, false) || exposesScope(n.end, false) || exposesScope(n.step, false) || exposesScope(n.body, true);
+		}
+		if(node instanceof ForInNode) return exposesScope(((ForInNode) node).array, false) || exposesScope(((ForInNode) node).body, true);
+		if(node instanceof WhileNode) return exposesScope(((WhileNode) node).condition, false) || exposesScope(((WhileNode) node).body, true);
+		if(node instanceof FunctionDefNode) return exposesScope(((FunctionDefNode) node).body, true);
+		if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			if(exposesScope(n.nodeToCall, false)) return true;
+			for(Object arg:n.args) if(exposesScope(arg, false)) return true;
+			return false;
+		}
+		if(node instanceof ListNode) {
+			for(Object o:((ListNode) node).elementNodes) if(exposesScope(o, false)) return true;
+			return false;
+		}
+		if(node instanceof ReturnNode) return exposesScope(((ReturnNode) node).toReturn, false);
+		if(node instanceof PointAccessNode) {
+			for(Object o:((PointAccessNode) node).nodes) if(exposesScope(o, false)) return true;
+			return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the loop counter {@code name} can be seen by anything else than arithmetic and comparisons,
+	 * in which case it has to stay an immutable {@link Interpreter.Number}.
+	 */
+	private static boolean escapes(String name, Object node) {
+		if(node == null) return false;
+		if(node instanceof VarAccessNode) return isCounter(name, node);
+		if(node instanceof ThisNode || node instanceof IncludeNode || node instanceof ObjectDefNode || node instanceof FunctionDefNode) return true;
+		if(node instanceof StatementsNode) {
+			for(Object o:((StatementsNode) node).elementNodes) if(escapes(name, o)) return true;
+			return false;
+		}
+		if(node instanceof VarAssignNode) return name.equals(((VarAssignNode) node).name.getValue()) || escapes(name, ((VarAssignNode) node).expression);
+		if(node instanceof VarModifyNode) return name.equals(((VarModifyNode) node).name.getValue()) || escapes(name, ((VarModifyNode) node).node);
+		if(node instanceof VarAddNode) return name.equals(((VarAddNode) node).name.getValue()) || escapes(name, ((VarAddNode) node).node);
+		if(node instanceof VarSubNode) return name.equals(((VarSubNode) node).name.getValue()) || escapes(name, ((VarSubNode) node).node);
+		if(node instanceof VarMultNode) return name.equals(((VarMultNode) node).name.getValue()) || escapes(name, ((VarMultNode) node).node);
+		if(node instanceof VarDivNode) return name.equals(((VarDivNode) node).name.getValue()) || escapes(name, ((VarDivNode) node).node);
+		if(node instanceof BinaryOperation) {
+			BinaryOperation n = (BinaryOperation) node;
+			if(n.operator == BinaryOperation.NONE) return escapes(name, n.leftNode) || escapes(name, n.rightNode);
+			// the counter only ends up on the right of an operation whose left side is a number: anything else may keep it
+			if(isCounter(name, n.rightNode) && !isNumeric(name, n.leftNode)) return true;
+			return (!isCounter(name, n.leftNode) && escapes(name, n.leftNode)) || (!isCounter(name, n.rightNode) && escapes(name, n.rightNode));
+		}
+		if(node instanceof UnaryOperation) {
+			UnaryOperation n = (UnaryOperation) node;
+			if(isCounter(name, n.node)) return !n.operationToken.matches(TokenType.MINUS) && !n.operationToken.matches("not", TokenType.KEYWORD);
+			return escapes(name, n.node);
+		}
+		if(node instanceof IfNode) {
+			IfNode n = (IfNode) node;
+			for(CaseDataNode cdn:n.cases)
+				if(escapes(name, cdn.condition) || escapes(name, cdn.statements)) return true;
+			return n.else_case != null && escapes(name, n.else_case.statements);
+		}
+		if(node instanceof ForNode) {
+			ForNode n = (ForNode) node;
+			return escapes(name, n.start) || escapes(name, n.end) || escapes(name, n.step) || escapes(name, n.body);
+		}
+		if(node instanceof ForInNode) return escapes(name, ((ForInNode) node).array) || escapes(name, ((ForInNode) node).body);
+		if(node instanceof WhileNode) return escapes(name, ((WhileNode) node).condition) || escapes(name, ((WhileNode) node).body);
+		if(node instanceof CallNode) {
+			CallNode n = (CallNode) node;
+			if(escapes(name, n.nodeToCall)) return true;
+			for(Object arg:n.args) if(escapes(name, arg)) return true;
+			return false;
+		}
+		if(node instanceof ListNode) {
+			for(Object o:((ListNode) node).elementNodes) if(escapes(name, o)) return true;
+			return false;
+		}
+		if(node instanceof ReturnNode) return escapes(name, ((ReturnNode) node).toReturn);
+		if(node instanceof PointAccessNode) {
+			for(Object o:((PointAccessNode) node).nodes) if(escapes(name, o)) return true;
+			return false;
+		}
+		if(node instanceof InstantiateNode) {
+			InstantiateNode n = (InstantiateNode) node;
+			if(escapes(name, n.nodeToCall)) return true;
+			for(Object arg:n.args) if(escapes(name, arg)) return true;
+			return false;
+		}
+		return false;
+	}
+
+	private static boolean isCounter(String name, Object node) {
+		return node instanceof VarAccessNode && name.equals(((VarAccessNode) node).name.getValue());
+	}
+
+	private static boolean isNumeric(String name, Object node) {
+		if(node instanceof NumberNode || isCounter(name, node)) return true;
+		if(node instanceof UnaryOperation) return ((UnaryOperation) node).operationToken.matches(TokenType.MINUS) && isNumeric(name, ((UnaryOperation) node).node);
+		if(node instanceof BinaryOperation) {
+			BinaryOperation n = (BinaryOperation) node;
+			return n.operator >= BinaryOperation.ADD && n.operator <= BinaryOperation.DIV && isNumeric(name, n.leftNode) && isNumeric(name, n.rightNode);
+		}
+		return false;
+	}
+
+}
\ No newline at end of file
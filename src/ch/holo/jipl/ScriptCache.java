@@ -0,0 +1,124 @@
+package ch.holo.jipl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import ch.holo.jipl.Parser.ParseResult;
+
+/**
+ * The trees of the pieces of code already run, keyed by their source and file, so running the same code again skips the {@link Lexer} and the {@link Parser}.
+ * The least recently run script is dropped first once there are more than maxScripts of them, or their sources add up to more than maxChars.
+ * A cached tree may be run against any context later on, so it is only optimized by the passes that do not look at a context.
+ */
+public class ScriptCache {
+
+	public static class Script {
+
+		protected final Object node;
+		protected volatile Bytecode code;
+
+		public Script(Object node) {
+			this.node = node;
+		}
+
+		public Object getNode() { return node; }
+
+		// compiled the first time the script runs on the VM, once even when several threads run it at the same time
+		public Bytecode getCode() {
+			Bytecode code = this.code;
+			if(code != null) return code;
+			synchronized(this) {
+				if(this.code == null) this.code = Compiler.compile(node);
+				return this.code;
+			}
+		}
+	}
+
+	private static class Key {
+
+		private final String source, file;
+		private final int hash;
+
+		public Key(String source, String file) {
+			this.source = source;
+			this.file = file;
+			this.hash = source.hashCode()*31 + Objects.hashCode(file);
+		}
+
+		public int hashCode() { return hash; }
+
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) return false;
+			Key key = (Key) obj;
+			return hash == key.hash && source.equals(key.source) && Objects.equals(file, key.file);
+		}
+	}
+
+	private final LinkedHashMap<Key, Script> scripts = new LinkedHashMap<Key, Script>(16, 0.75f, true);
+	private int maxScripts, maxChars, chars;
+	private long hits, misses;
+
+	public ScriptCache(int maxScripts, int maxChars) {
+		this.maxScripts = maxScripts;
+		this.maxChars = maxChars;
+	}
+
+	public synchronized Script get(String source, String file) {
+		Script script = scripts.get(new Key(source, file));
+		if(script != null) hits++;
+		else misses++;
+		return script;
+	}
+
+	public synchronized void put(String source, String file, Script script) {
+		if(source.length() > maxChars) return;
+		Script old = scripts.put(new Key(source, file), script);
+		if(old == null) chars += source.length();
+		evict();
+	}
+
+	/**
+	 * Parses the code and keeps its tree, so that the first time it is run skips the parser too.
+	 * Returns the syntax error of the code, or null when it is ready.
+	 */
+	public Error prewarm(String source, String file) {
+		synchronized(this) {
+			if(scripts.containsKey(new Key(source, file))) return null;
+		}
+		ParseResult pr = (ParseResult) new Parser(new Lexer(source, file)).parse();
+		if(pr.error != null) return pr.error;
+		put(source, file, new Script(JIPL.optimize?Optimizer.optimize(pr.node, null):pr.node));
+		return null;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Script>> it = scripts.entrySet().iterator();
+		while(it.hasNext() && (scripts.size() > maxScripts || chars > maxChars)) {
+			chars -= it.next().getKey().source.length();
+			it.remove();
+		}
+	}
+
+	public synchronized void setLimits(int maxScripts, int maxChars) {
+		this.maxScripts = maxScripts;
+		this.maxChars = maxChars;
+		evict();
+	}
+
+	public synchronized void clear() {
+		scripts.clear();
+		chars = 0;
+	}
+
+	public synchronized int size() { return scripts.size(); }
+	public synchronized int chars() { return chars; }
+	public synchronized long hits() { return hits; }
+	public synchronized long misses() { return misses; }
+
+	public synchronized String toString() {
+		return "ScriptCache(" + scripts.size() + " scripts, " + chars + " chars, " + hits + " hits, " + misses + " misses)";
+	}
+
+}
\ No newline at end of file
@@ -23,6 +23,8 @@ public  class Sequence implements Serializable {
 	public int getSize() { return size; }
 	public void setSize(int size) { this.size = size; }
 	
+	public String getFile() { return file; }
+	
 	public String toString() {
 		return "line "+line + "("+file+")";
 	}
@@ -0,0 +1,245 @@
+package ch.holo.jipl;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * The names of a {@link Context}, kept in one open addressing table with linear probing.
+ * The {@link Lexer} gives one String to all the uses of a name in a script, so keys are compared by identity before falling back to equals,
+ * and the setter and getter tracks of a name sit in the same slot as its value.
+ * It is a Map too, as the HashMap the symbols used to be kept in, but its views are read only, names come and go through put and remove.
+ */
+public class SymbolTable extends AbstractMap<String, Object> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The table of the contexts nothing was written to yet, shared by all of them so it can not be written to. */
+	public static final SymbolTable EMPTY = new Empty();
+
+	private static final class Empty extends SymbolTable {
+		private static final long serialVersionUID = 1L;
+
+		private Empty() { super(0); }
+
+		private static UnsupportedOperationException readOnly() {
+			return new UnsupportedOperationException("The empty symbol table is shared, write through Context.set or Context.getSymbols()");
+		}
+
+		public Object put(String name, Object value) { throw readOnly(); }
+		public Object remove(String name) { return null; }
+		public void clear() {}
+		public void track(String name, Consumer<Object> setter, Callable<Object> getter) { throw readOnly(); }
+		public void putAll(SymbolTable other) { if(!other.isEmpty()) throw readOnly(); }
+
+		private Object readResolve() { return EMPTY; }
+	}
+
+	private String[] keys;
+	private int[] hashes;
+	private Object[] values;
+	private Object[] setters, getters;
+	private int size, mask;
+
+	public SymbolTable() { this(8); }
+
+	public SymbolTable(int capacity) {
+		int length = Integer.highestOneBit(Math.max(2, capacity-1)) << 1;
+		keys = new String[length];
+		hashes = new int[length];
+		values = new Object[length];
+		mask = length-1;
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	public int find(String name) {
+		if(size == 0) return -1;
+		int h = hash(name);
+		for(int i = h & mask;; i = (i+1) & mask) {
+			String key = keys[i];
+			if(key == name) return i;
+			if(key == null) return -1;
+			if(hashes[i] == h && key.equals(name)) return i;
+		}
+	}
+
+	public boolean isEmpty() { return size == 0; }
+	public int size() { return size; }
+	public boolean containsKey(String name) { return find(name) >= 0; }
+	public boolean containsKey(Object name) { return name instanceof String && find((String) name) >= 0; }
+
+	public Object get(String name) {
+		int i = find(name);
+		return i < 0?null:values[i];
+	}
+
+	public Object get(Object name) { return name instanceof String?get((String) name):null; }
+
+	public Object put(String name, Object value) {
+		int i = find(name);
+		if(i >= 0) {
+			Object old = values[i];
+			values[i] = value;
+			return old;
+		}
+		if((size+1)*4 > keys.length*3) grow();
+		i = insert(name, hash(name));
+		values[i] = value;
+		return null;
+	}
+
+	private int insert(String name, int h) {
+		int i = h & mask;
+		while(keys[i] != null) i = (i+1) & mask;
+		keys[i] = name;
+		hashes[i] = h;
+		size++;
+		return i;
+	}
+
+	private void grow() {
+		String[] oldKeys = keys;
+		Object[] oldValues = values, oldSetters = setters, oldGetters = getters;
+		int[] oldHashes = hashes;
+		int length = oldKeys.length*2;
+		keys = new String[length];
+		hashes = new int[length];
+		values = new Object[length];
+		if(oldSetters != null) {
+			setters = new Object[length];
+			getters = new Object[length];
+		}
+		mask = length-1;
+		size = 0;
+		for(int j = 0; j < oldKeys.length; j++) {
+			if(oldKeys[j] == null) continue;
+			int i = insert(oldKeys[j], oldHashes[j]);
+			values[i] = oldValues[j];
+			if(oldSetters != null) {
+				setters[i] = oldSetters[j];
+				getters[i] = oldGetters[j];
+			}
+		}
+	}
+
+	public Object remove(String name) {
+		int i = find(name);
+		if(i < 0) return null;
+		Object old = values[i];
+		// shift the following entries of the run back so probes never stop early
+		for(int j = (i+1) & mask; keys[j] != null; j = (j+1) & mask) {
+			int home = hashes[j] & mask;
+			if(((j-home) & mask) < ((j-i) & mask)) continue;
+			move(j, i);
+			i = j;
+		}
+		keys[i] = null;
+		values[i] = null;
+		if(setters != null) setters[i] = getters[i] = null;
+		size--;
+		return old;
+	}
+
+	public Object remove(Object name) { return name instanceof String?remove((String) name):null; }
+
+	public void clear() {
+		for(int i = 0; i < keys.length; i++) keys[i] = null;
+		for(int i = 0; i < values.length; i++) values[i] = null;
+		setters = getters = null;
+		size = 0;
+	}
+
+	private void move(int from, int to) {
+		keys[to] = keys[from];
+		hashes[to] = hashes[from];
+		values[to] = values[from];
+		if(setters != null) {
+			setters[to] = setters[from];
+			getters[to] = getters[from];
+		}
+	}
+
+	public void track(String name, Consumer<Object> setter, Callable<Object> getter) {
+		int i = find(name);
+		if(i < 0) {
+			put(name, null);
+			i = find(name);
+		}
+		if(setters == null) {
+			setters = new Object[keys.length];
+			getters = new Object[keys.length];
+		}
+		setters[i] = setter;
+		getters[i] = getter;
+	}
+
+	public boolean tracked() { return setters != null; }
+
+	@SuppressWarnings("unchecked")
+	public Consumer<Object> setter(int i) { return setters == null?null:(Consumer<Object>) setters[i]; }
+	@SuppressWarnings("unchecked")
+	public Callable<Object> getter(int i) { return getters == null?null:(Callable<Object>) getters[i]; }
+
+	public Object value(int i) { return values[i]; }
+	public void value(int i, Object value) { values[i] = value; }
+
+	public void putAll(SymbolTable other) {
+		for(int j = 0; j < other.keys.length; j++) {
+			if(other.keys[j] == null) continue;
+			put(other.keys[j], other.values[j]);
+			if(other.setters != null && (other.setters[j] != null || other.getters[j] != null))
+				track(other.keys[j], other.setter(j), other.getter(j));
+		}
+	}
+
+	public HashMap<String, Object> toMap() {
+		HashMap<String, Object> map = new HashMap<>();
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != null) map.put(keys[i], values[i]);
+		return map;
+	}
+
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			public int size() { return size; }
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Iterator<Map.Entry<String, Object>>() {
+					private int next = skip(0);
+
+					private int skip(int i) {
+						while(i < keys.length && keys[i] == null) i++;
+						return i;
+					}
+
+					public boolean hasNext() { return next < keys.length; }
+
+					public Map.Entry<String, Object> next() {
+						if(next >= keys.length) throw new NoSuchElementException();
+						final int i = next;
+						next = skip(i+1);
+						return new AbstractMap.SimpleEntry<String, Object>(keys[i], values[i]) {
+							private static final long serialVersionUID = 1L;
+							public Object setValue(Object value) {
+								values[i] = value;
+								return super.setValue(value);
+							}
+						};
+					}
+				};
+			}
+		};
+	}
+
+	public String toString() { return toMap().toString(); }
+}
\ No newline at end of file
@@ -1,29 +1,65 @@
 package ch.holo.jipl;
 
+import java.io.Serializable;
+
 import ch.holo.jipl.Token.TokenType;
 
-public class Token {
-		
+public class Token implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
 	protected TokenType type;
 	protected Object value;
-	protected Sequence seq;
+	protected PositionTable positions;
+	protected int offset, size;
 	
-	public Token(TokenType type, Sequence seq, Object value) {
+	public Token(TokenType type, PositionTable positions, int offset, int size, Object value) {
 		this.type = type;
-		this.seq = seq;
+		this.positions = positions;
+		this.offset = offset;
+		this.size = size;
 		this.value = value;
 	}
 	
+	public Token(TokenType type, PositionTable positions, int offset, int size) {
+		this(type, positions, offset, size, null);
+	}
+	
+	/** @deprecated tokens keep an offset into a {@link PositionTable}, use {@link #Token(TokenType, PositionTable, int, int, Object)} */
+	@Deprecated
+	public Token(TokenType type, Sequence seq, Object value) {
+		this(type, seq == null?null:PositionTable.of(seq), seq == null?0:seq.getOffset(), seq == null?0:seq.getSize(), value);
+	}
+	
+	/** @deprecated tokens keep an offset into a {@link PositionTable}, use {@link #Token(TokenType, PositionTable, int, int)} */
+	@Deprecated
 	public Token(TokenType type, Sequence seq) {
+		this(type, seq, null);
+	}
+	
+	// a token standing at the same place as another one, or nowhere when there is none
+	public Token(TokenType type, Token at, Object value) {
 		this.type = type;
-		this.seq = seq;
+		this.value = value;
+		if(at != null) {
+			this.positions = at.positions;
+			this.offset = at.offset;
+			this.size = at.size;
+		}
 	}
 	
 	public TokenType getType() { return type; }
 	public void setType(TokenType type) { this.type = type; }
 	
-	public Sequence getSeq() { return seq; }
-	public void setSeq(Sequence seq) { this.seq = seq; }
+	public Sequence getSeq() { return positions==null?null:positions.sequence(offset, size); }
+	
+	/** @deprecated the place of a token is its offset into a {@link PositionTable} */
+	@Deprecated
+	public void setSeq(Sequence seq) {
+		this.positions = seq == null?null:PositionTable.of(seq);
+		this.offset = seq == null?0:seq.getOffset();
+		this.size = seq == null?0:seq.getSize();
+	}
 
 	public Object getValue() { return value; }
 	public void setValue(Object value) { this.value = value; }
@@ -0,0 +1,20 @@
+package ch.holo.jipl;
+
+import java.util.Iterator;
+
+/**
+ * The tokens of a piece of code, handed out one at a time as the {@link Parser} asks for them.
+ */
+public interface TokenStream {
+	
+	/**
+	 * The next token, the last one of the code being of type END_OF_CODE, or null once the code has no tokens left.
+	 */
+	public Token next();
+	
+	public static TokenStream of(Iterable<Token> tokens) {
+		Iterator<Token> it = tokens.iterator();
+		return () -> it.hasNext()?it.next():null;
+	}
+	
+}
@@ -0,0 +1,691 @@
+package ch.holo.jipl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ch.holo.jipl.Interpreter.BaseFunction;
+import ch.holo.jipl.Interpreter.BuildInMethod;
+import ch.holo.jipl.Interpreter.Frame;
+import ch.holo.jipl.Interpreter.Function;
+import ch.holo.jipl.Interpreter.Function.CallStack;
+import ch.holo.jipl.Interpreter.List;
+import ch.holo.jipl.Interpreter.MemberContext;
+import ch.holo.jipl.Interpreter.Number;
+import ch.holo.jipl.Interpreter.ObjectValue;
+import ch.holo.jipl.Interpreter.RTResult;
+import ch.holo.jipl.Interpreter.TailCall;
+import ch.holo.jipl.Interpreter.Value;
+import ch.holo.jipl.Parser.CallNode;
+import ch.holo.jipl.Parser.FunctionDefNode;
+import ch.holo.jipl.Parser.InvariantNode;
+import ch.holo.jipl.Parser.VarAccessNode;
+
+/**
+ * Stack machine running {@link Bytecode}. Results, control flow and error traces follow {@link Interpreter#visit}:
+ * instead of one {@link RTResult} per node, the associated token of every open node is kept on a side stack.
+ */
+public class VM {
+
+	protected Frame frame;
+	private Interpreter interpreter;
+
+	private Object[] stack = new Object[16];
+	private int sp;
+
+	private Context[] contexts;
+	private int csp;
+
+	private Token[] assocs = new Token[16];
+	private int asp;
+	private Token assoc;
+
+	private int[] hBreak, hContinue, hSp, hCsp, hAsp;
+	private Context[] hContext;
+	private int hp;
+
+	// how a call that ended the run ended it
+	private RTResult ended;
+
+	/**
+	 * A call to a function whose body runs as bytecode, which the VM hands back to {@link VM#run} rather than making it itself.
+	 * The function runs on a VM of its own while the caller waits in a list on the heap, so deep recursion does not grow the Java stack.
+	 */
+	private static class Call {
+
+		protected final VM caller;
+		protected final Bytecode bytecode;
+		protected final Context context;
+		protected final int pc;
+
+		protected Function function;
+		protected Value[] args;
+		protected RTResult res;
+		protected ArrayList<Token> trace;
+		protected boolean returned;
+
+		protected Call(VM caller, Bytecode bytecode, Context context, int pc, Function function, Value[] args) {
+			this.caller = caller;
+			this.bytecode = bytecode;
+			this.context = context;
+			this.pc = pc;
+			this.function = function;
+			this.args = args;
+		}
+
+		// carries on from what the function returned, null to start it: makes the calls it returns in its place, then starts the body of the last one
+		protected Object proceed(CallStack stack, Object ret) {
+			while(true) {
+				if(ret != null) {
+					TailCall call = Function.tailCall(ret);
+					if(call == null) {
+						returned = true;
+						return Function.traced(ret, trace);
+					}
+					trace = Function.trace(call, trace);
+					function = call.function;
+					args = call.args;
+				}
+				Bytecode code = function.frameSize>=0?function.code(stack):null;
+				if(code == null) {
+					ret = function.invoke(stack, args);
+					continue;
+				}
+				res = new RTResult();
+				Context context = function.generateNewContext();
+				Object entered = function.enter(stack, res, context, args);
+				if(!(entered instanceof Frame)) {
+					ret = entered;
+					continue;
+				}
+				return stack.vm((Frame) entered).execute(code, context, 0);
+			}
+		}
+	}
+
+	public VM() {}
+	public VM(Frame frame) { this.frame = frame; }
+
+	// lets a VM that finished its run start another one on the given frame
+	protected VM reuse(Frame frame) {
+		this.frame = frame;
+		if(interpreter != null) interpreter.frame = frame;
+		sp = csp = asp = hp = 0;
+		assoc = null;
+		return this;
+	}
+
+	public Object run(Bytecode bytecode, Context context) {
+		Object result = execute(bytecode, context, 0);
+		return result instanceof Call?calls((Call) result):result;
+	}
+
+	// the functions compiled to bytecode, and once the calls nest deep enough the others too
+	private static boolean runsOnHeap(BaseFunction function) {
+		if(!(function instanceof Function) || ((Function) function).frameSize < 0) return false;
+		return ((Function) function).bytecode != null || Function.deep(Function.CALL_STACK.get());
+	}
+
+	// makes the call and the ones it leads to, each caller waiting in the list until the function it called returns
+	private static Object calls(Call call) {
+		CallStack stack = Function.CALL_STACK.get();
+		ArrayList<Call> waiting = new ArrayList<Call>();
+		try {
+			Object out = call;
+			while(true) {
+				if(out instanceof Call) {
+					call = (Call) out;
+					stack.enter();
+					waiting.add(call);
+					out = call.proceed(stack, null);
+				} else {
+					if(waiting.isEmpty()) return out;
+					call = waiting.get(waiting.size()-1);
+					out = call.proceed(stack, call.function.complete(call.res, out));
+				}
+				if(call.returned) {
+					waiting.remove(waiting.size()-1);
+					stack.leave();
+					out = call.caller.resume(call, out);
+				}
+			}
+		} finally {
+			for(int i = waiting.size(); i > 0; i--) stack.leave();
+		}
+	}
+
+	private Object resume(Call call, Object ret) {
+		int pc = called(ret, call.pc);
+		return pc < 0?ended:execute(call.bytecode, call.context, pc);
+	}
+
+	// runs the code from pc, until it ends or hands a call back
+	private Object execute(Bytecode bytecode, Context context, int pc) {
+		final int[] code = bytecode.code;
+		final Object[] constants = bytecode.constants;
+
+		while(true) {
+			if(sp+4 > stack.length) stack = grow(stack);
+			switch(code[pc]) {
+				case Bytecode.NUMBER:
+					stack[sp++] = constants[code[pc+1]];
+					assoc = null;
+					pc += 2;
+					break;
+				case Bytecode.STRING:
+					stack[sp++] = constants[code[pc+1]];
+					assoc = null;
+					pc += 2;
+					break;
+				case Bytecode.NULL:
+					stack[sp++] = Number.NULL;
+					pc++;
+					break;
+				case Bytecode.SELF:
+					stack[sp++] = new ObjectValue(context);
+					pc++;
+					break;
+				case Bytecode.THIS:
+					stack[sp++] = new ObjectValue(context);
+					assoc = null;
+					pc++;
+					break;
+				case Bytecode.POP:
+					sp--;
+					pc++;
+					break;
+				case Bytecode.LOAD_SLOT: {
+					Object value = frame.get(code[pc+1], code[pc+2]);
+					Token name = (Token) constants[code[pc+3]];
+					if(value == Number.NULL || value == null)
+						return fail(new Error.NullPointerError(name.value + " is not defined", name.getSeq()), true);
+					stack[sp++] = value;
+					assoc = name;
+					pc += 4;
+					break;
+				}
+				case Bytecode.LOAD_NAME: {
+					VarAccessNode node = (VarAccessNode) constants[code[pc+1]];
+					Token name = node.name;
+					Object value = node.cache!=null?node.cache.get(context, (String) name.value):node.global!=null?node.global.get(context, (String) name.value):context.get((String) name.value);
+					if(value == Number.NULL || value == null)
+						return fail(new Error.NullPointerError(name.value + " is not defined", name.getSeq()), true);
+					stack[sp++] = value;
+					assoc = name;
+					pc += 2;
+					break;
+				}
+				case Bytecode.ASSIGN_SLOT:
+					frame.set(code[pc+1], code[pc+2], stack[sp-1]);
+					pc += 3;
+					break;
+				case Bytecode.ASSIGN_NAME:
+					context.set((String) constants[code[pc+1]], stack[sp-1]);
+					pc += 2;
+					break;
+				case Bytecode.MODIFY_NAME: {
+					String name = (String) constants[code[pc+1]];
+					if(!name.equals("this")) {
+						if(context.parent == null || context.displayName.equals("<Global>")) context.set(name, stack[sp-1]);
+						else context.getSource(name).set(name, stack[sp-1]);
+					}
+					pc += 2;
+					break;
+				}
+				case Bytecode.COMPOUND_SLOT: {
+					Frame f = frame.at(code[pc+2]);
+					int slot = code[pc+3];
+					Object val = compound(code[pc+1], (Value) f.slots[slot], stack[sp-1]);
+					if(val instanceof Error) return fail((Error) val, false);
+					if(val instanceof RTResult) {
+						if(((RTResult) val).error != null) return fail(((RTResult) val).error, true);
+						assoc = ((RTResult) val).associatedToken;
+						val = ((RTResult) val).value;
+					}
+					f.slots[slot] = val;
+					stack[sp-1] = f.slots[slot];
+					pc += 4;
+					break;
+				}
+				case Bytecode.COMPOUND_NAME: {
+					String name = (String) constants[code[pc+2]];
+					if(!name.equals("this")) {
+						Context con = context.getSource(name);
+						Object val = compound(code[pc+1], (Value) con.get(name), stack[sp-1]);
+						if(val instanceof Error) return fail((Error) val, false);
+						if(val instanceof RTResult) {
+							if(((RTResult) val).error != null) return fail(((RTResult) val).error, true);
+							assoc = ((RTResult) val).associatedToken;
+							val = ((RTResult) val).value;
+						}
+						con.set(name, val);
+						stack[sp-1] = con.get(name);
+					}
+					pc += 3;
+					break;
+				}
+				case Bytecode.BINARY: {
+					Value right = (Value) stack[--sp], left = (Value) stack[sp-1];
+					Object result;
+					switch(code[pc+1]) {
+						case Bytecode.ADD: result = left.add(right); break;
+						case Bytecode.SUB: result = left.sub(right); break;
+						case Bytecode.MULT: result = left.mult(right); break;
+						case Bytecode.DIV: result = left.div(right); break;
+						case Bytecode.EQUALS: result = left._equals(right); break;
+						case Bytecode.NOT_EQUALS: result = left._not_equals(right); break;
+						case Bytecode.LESS: result = left._less(right); break;
+						case Bytecode.LESS_EQUALS: result = left._less_equals(right); break;
+						case Bytecode.GREATER: result = left._greater(right); break;
+						case Bytecode.GREATER_EQUALS: result = left._greater_equals(right); break;
+						case Bytecode.AND: result = left._and(right); break;
+						case Bytecode.OR: result = left._or(right); break;
+						default: result = null;
+					}
+					if(result instanceof Error) return fail((Error) result, false);
+					if(result instanceof RTResult) {
+						if(((RTResult) result).error != null) return fail(((RTResult) result).error, true);
+						result = ((RTResult) result).value;
+					}
+					stack[sp-1] = result;
+					pc += 2;
+					break;
+				}
+				case Bytecode.SHORT_CIRCUIT: {
+					Object result = Interpreter.shortCircuit(stack[sp-1], code[pc+1]);
+					if(result != null) {
+						stack[sp-1] = result;
+						pc = code[pc+2];
+					} else pc += 3;
+					break;
+				}
+				case Bytecode.UNARY: {
+					Number n = (Number) stack[sp-1];
+					if(code[pc+1] == Bytecode.NEGATE) n = (Number) n.mult(Interpreter.MINUS_ONE);
+					else if(code[pc+1] == Bytecode.NOT) n = (Number) n._not();
+					stack[sp-1] = n;
+					pc += 2;
+					break;
+				}
+				case Bytecode.INVARIANT: {
+					Object value = Interpreter.recall((InvariantNode) constants[code[pc+1]], frame);
+					if(value != null) {
+						stack[sp++] = value;
+						assoc = null;
+						pc = code[pc+2];
+					} else pc += 3;
+					break;
+				}
+				case Bytecode.MEMO:
+					Interpreter.memorize((InvariantNode) constants[code[pc+1]], frame, stack[sp-1]);
+					pc += 2;
+					break;
+				case Bytecode.JUMP:
+					pc = code[pc+1];
+					break;
+				case Bytecode.JUMP_IF_FALSE:
+					pc = ((Number) stack[--sp]).isTrue()?pc+2:code[pc+1];
+					break;
+				case Bytecode.PUSH_CONTEXT:
+					if(contexts == null) contexts = new Context[4];
+					else if(csp == contexts.length) contexts = grow(contexts);
+					contexts[csp++] = context;
+					context = scope(constants, code[pc+1], context);
+					pc += 2;
+					break;
+				case Bytecode.POP_CONTEXT:
+					context = contexts[--csp];
+					pc++;
+					break;
+				case Bytecode.ENTER:
+					if(asp == assocs.length) assocs = grow(assocs);
+					assocs[asp++] = assoc;
+					assoc = null;
+					pc++;
+					break;
+				case Bytecode.LEAVE_SET:
+					asp--;
+					pc++;
+					break;
+				case Bytecode.LEAVE_KEEP:
+					assoc = assocs[--asp];
+					pc++;
+					break;
+				case Bytecode.FOLDED: {
+					CallNode call = (CallNode) constants[code[pc+1]];
+					if(stack[sp-1] == call.folding) {
+						stack[sp-1] = call.folded;
+						asp--;
+						pc = code[pc+2];
+					} else pc += 3;
+					break;
+				}
+				case Bytecode.METHOD: {
+					VarAccessNode node = (VarAccessNode) constants[code[pc+1]];
+					Token name = node.name;
+					BuildInMethod method = context instanceof MemberContext?((MemberContext) context).method((String) name.value):null;
+					Object value = method!=null?method:node.cache!=null?node.cache.get(context, (String) name.value):context.get((String) name.value);
+					if(value == Number.NULL || value == null)
+						return fail(new Error.NullPointerError(name.value + " is not defined", name.getSeq()), true);
+					stack[sp++] = value;
+					assoc = name;
+					pc += 2;
+					break;
+				}
+				case Bytecode.MEMBER: {
+					Object value = stack[sp-1];
+					context = ((Value) (value instanceof RTResult?((RTResult) value).value:value)).generateContext(context);
+					pc++;
+					break;
+				}
+				case Bytecode.LIST: {
+					List list = new List(new ArrayList<Object>());
+					if(contexts == null) contexts = new Context[4];
+					else if(csp == contexts.length) contexts = grow(contexts);
+					contexts[csp++] = context;
+					context = list.generateContext(context);
+					stack[sp++] = list;
+					pc++;
+					break;
+				}
+				case Bytecode.LIST_ADD: {
+					Object value = stack[--sp];
+					((List) stack[sp-1]).elements.add(value);
+					pc++;
+					break;
+				}
+				case Bytecode.CALLABLE:
+					if(stack[sp-1] instanceof BuildInMethod) {
+						pc += 2;
+						break;
+					}
+					if(!(stack[sp-1] instanceof BaseFunction)) {
+						assoc = assocs[--asp];
+						pc = code[pc+1];
+						break;
+					}
+					((BaseFunction) stack[sp-1]).setContext(context);
+					pc += 2;
+					break;
+				case Bytecode.CALL:
+				case Bytecode.TAIL_CALL: {
+					if(JIPL.stop) return fail(new Error.Stop("Stop", null), false);
+					int argc = code[pc+1];
+					// a value stored as the RTResult an overload returned is passed as what it holds, like the interpreter does
+					Value[] values = new Value[argc];
+					for(int i = 0; i < argc; i++) {
+						Object arg = stack[sp-argc+i];
+						if(arg instanceof RTResult) arg = ((RTResult) arg).value;
+						if(!(arg instanceof Value)) return fail(new Error.RuntimeError("'" + arg + "' can not be passed as an argument.", null), false);
+						values[i] = (Value) arg;
+					}
+					sp -= argc;
+					if(stack[sp-1] instanceof BuildInMethod) {
+						pc = called(((BuildInMethod) stack[--sp]).call(((MemberContext) context).self, values), pc);
+						if(pc < 0) return ended;
+						break;
+					}
+					BaseFunction function = (BaseFunction) stack[--sp];
+					if(code[pc] == Bytecode.TAIL_CALL && function instanceof Function)
+						return exit(new RTResult().success_return(new TailCall((Function) function, values, assoc)));
+					if(runsOnHeap(function)) return new Call(this, bytecode, context, pc, (Function) function, values);
+					pc = called(function.execute(values), pc);
+					if(pc < 0) return ended;
+					break;
+				}
+				case Bytecode.FUNCTION: {
+					Object[] def = (Object[]) constants[code[pc+1]];
+					FunctionDefNode node = (FunctionDefNode) def[0];
+					String fname = node.name==null?null:(String)node.name.value;
+					Function function = new Function(fname, node.body, (String[]) def[1], node.shouldAutoReturn).setFrame(node.frameSize, frame).setBytecode((Bytecode) def[2]).setProfile(node.profile);
+					function.setContext(context).setOrigin(node.name);
+					if(node.name != null)
+						context.set(fname, function);
+					stack[sp++] = function;
+					assoc = null;
+					pc += 2;
+					break;
+				}
+				case Bytecode.EVAL: {
+					if(interpreter == null) interpreter = new Interpreter(frame);
+					Object result = interpreter.visit(constants[code[pc+1]], context);
+					if(result instanceof RTResult) {
+						RTResult pr = (RTResult) result;
+						if(pr.error != null) return fail(pr.error, true);
+						assoc = pr.associatedToken;
+						if(pr.returnValue != null || pr.shouldContinue || pr.shouldBreak) {
+							pc = unwind(pr);
+							if(pc < 0) return exit(pr);
+							break;
+						}
+						result = pr.value;
+					} else if(result instanceof Error) return fail((Error) result, false);
+					stack[sp++] = result;
+					pc += 2;
+					break;
+				}
+				case Bytecode.RETURN:
+					return exit(new RTResult().success_return(stack[--sp]));
+				case Bytecode.BREAK: {
+					assoc = null;
+					RTResult pr = new RTResult().success_break();
+					pc = unwind(pr);
+					if(pc < 0) return exit(pr);
+					break;
+				}
+				case Bytecode.CONTINUE: {
+					assoc = null;
+					RTResult pr = new RTResult().success_continue();
+					pc = unwind(pr);
+					if(pc < 0) return exit(pr);
+					break;
+				}
+				case Bytecode.WHILE_PREP:
+					stack[sp++] = code[pc+2]==1?null:new ArrayList<Object>();
+					stack[sp++] = scope(constants, code[pc+1], context);
+					pc += 3;
+					break;
+				case Bytecode.FOR_PREP: {
+					Number step = code[pc+3]==1?(Number) stack[--sp]:null;
+					Number end = (Number) stack[--sp], start = (Number) stack[--sp];
+					if(step == null) step = start.less(end)?Number.of(1):Interpreter.MINUS_ONE;
+					if(code[pc+4]==1 && start.integral && step.integral) start = new Number(start.integer);
+					stack[sp++] = code[pc+2]==1?null:new ArrayList<Object>();
+					stack[sp++] = end;
+					stack[sp++] = step;
+					stack[sp++] = start;
+					stack[sp++] = scope(constants, code[pc+1], context);
+					pc += 5;
+					break;
+				}
+				case Bytecode.FORIN_PREP: {
+					Object list = stack[--sp];
+					if(!(list instanceof List))
+						return fail(new Error.RuntimeError("'"+list + "' is not a list.", null), false);
+					Context newContext = scope(constants, code[pc+1], context);
+					stack[sp++] = code[pc+2]==1?null:new ArrayList<Object>();
+					stack[sp++] = ((List) list).elements;
+					stack[sp++] = new int[1];
+					stack[sp++] = newContext;
+					pc += 3;
+					break;
+				}
+				case Bytecode.HANDLER:
+					if(hBreak == null || hp == hBreak.length) growHandlers();
+					hBreak[hp] = code[pc+1];
+					hContinue[hp] = code[pc+2];
+					hSp[hp] = sp;
+					hCsp[hp] = csp;
+					hAsp[hp] = asp;
+					hContext[hp++] = context;
+					pc += 3;
+					break;
+				case Bytecode.WHILE_TEST:
+					if(!((Number) stack[--sp]).isTrue()) {
+						pc = code[pc+1];
+						break;
+					}
+					context = (Context) stack[sp-1];
+					pc += 2;
+					break;
+				case Bytecode.FOR_TEST: {
+					int base = hSp[hp-1];
+					Number end = (Number) stack[base-4], step = (Number) stack[base-3], i = (Number) stack[base-2];
+					if(!(step.value >= 0?i.less(end):end.less(i))) {
+						pc = code[pc+1];
+						break;
+					}
+					context = (Context) stack[base-1];
+					if(code[pc+2] < 0) context.set((String) constants[code[pc+3]], i);
+					else frame.slots[code[pc+2]] = i;
+					pc += 4;
+					break;
+				}
+				case Bytecode.FORIN_TEST: {
+					int base = hSp[hp-1];
+					@SuppressWarnings("unchecked")
+					ArrayList<Object> array = (ArrayList<Object>) stack[base-3];
+					int i = ((int[]) stack[base-2])[0];
+					if(i >= array.size()) {
+						pc = code[pc+1];
+						break;
+					}
+					context = (Context) stack[base-1];
+					if(code[pc+2] < 0) context.set((String) constants[code[pc+3]], array.get(i));
+					else frame.slots[code[pc+2]] = array.get(i);
+					pc += 4;
+					break;
+				}
+				case Bytecode.LOOP_ADD: {
+					Object value = stack[--sp];
+					@SuppressWarnings("unchecked")
+					ArrayList<Object> elements = (ArrayList<Object>) stack[hSp[hp-1]-(code[hBreak[hp-1]+1])];
+					if(elements != null) elements.add(value);
+					pc++;
+					break;
+				}
+				case Bytecode.WHILE_STEP:
+					if(JIPL.stop) return fail(new Error.Stop("Stop", null), false);
+					context = hContext[hp-1];
+					pc = code[pc+1];
+					break;
+				case Bytecode.FOR_STEP: {
+					if(JIPL.stop) return fail(new Error.Stop("Stop", null), false);
+					int base = hSp[hp-1];
+					Number i = (Number) stack[base-2], step = (Number) stack[base-3];
+					stack[base-2] = code[pc+2]==1?i.advance(step):i.plus(step);
+					context = hContext[hp-1];
+					pc = code[pc+1];
+					break;
+				}
+				case Bytecode.FORIN_STEP:
+					if(JIPL.stop) return fail(new Error.Stop("Stop", null), false);
+					((int[]) stack[hSp[hp-1]-2])[0]++;
+					context = hContext[hp-1];
+					pc = code[pc+1];
+					break;
+				case Bytecode.LOOP_END: {
+					context = hContext[--hp];
+					sp -= code[pc+1];
+					@SuppressWarnings("unchecked")
+					ArrayList<Object> elements = (ArrayList<Object>) stack[sp];
+					stack[sp++] = elements==null?Number.NULL:new List(elements);
+					pc += 2;
+					break;
+				}
+				case Bytecode.END: {
+					Object value = stack[--sp];
+					if(bytecode.raw) return value;
+					RTResult res = new RTResult().success(value);
+					res.associatedToken = assoc;
+					return res;
+				}
+			}
+		}
+	}
+
+	// takes over what the call at pc returned, gives where to go on or -1 when the run ends as ended says
+	private int called(Object result, int pc) {
+		if(result instanceof RTResult) {
+			RTResult pr = (RTResult) result;
+			if(pr.error != null) {
+				ended = fail(pr.error, true);
+				return -1;
+			}
+			assoc = pr.associatedToken;
+			if(pr.returnValue != null || pr.shouldContinue || pr.shouldBreak) {
+				int to = unwind(pr);
+				if(to < 0) ended = exit(pr);
+				return to;
+			}
+			result = pr.value;
+		} else if(result instanceof Error) {
+			ended = fail((Error) result, false);
+			return -1;
+		}
+		stack[sp++] = result;
+		return pc+2;
+	}
+
+	// what "+=", "-=", "*=" or "/=" computes, an overload giving back its RTResult
+	private static Object compound(int op, Value current, Object value) {
+		switch(op) {
+			case Bytecode.ADD: return current.add(value);
+			case Bytecode.SUB: return current.sub(value);
+			case Bytecode.MULT: return current.mult(value);
+			default: return current.div(value);
+		}
+	}
+
+	private static Context scope(Object[] constants, int name, Context parent) { return name < 0?parent:new Context((String) constants[name], parent); }
+
+	private int unwind(RTResult pr) {
+		if(pr.returnValue != null || hp == 0) return -1;
+		sp = hSp[hp-1];
+		csp = hCsp[hp-1];
+		asp = hAsp[hp-1];
+		return pr.shouldContinue?hContinue[hp-1]:hBreak[hp-1];
+	}
+
+	private RTResult exit(RTResult pr) {
+		RTResult res = new RTResult();
+		if(pr.returnValue != null) res.success_return(pr.returnValue);
+		else if(pr.shouldContinue) res.success_continue();
+		else res.success_break();
+		res.associatedToken = assoc;
+		return res;
+	}
+
+	private RTResult fail(Error error, boolean child) {
+		if(child && assoc != null) error.add(assoc);
+		for(int i = asp-1; i >= 0; i--)
+			if(assocs[i] != null) error.add(assocs[i]);
+		RTResult res = new RTResult().failure(error);
+		res.associatedToken = assoc;
+		return res;
+	}
+
+	private void growHandlers() {
+		if(hBreak == null) {
+			hBreak = new int[2]; hContinue = new int[2]; hSp = new int[2]; hCsp = new int[2]; hAsp = new int[2];
+			hContext = new Context[2];
+			return;
+		}
+		hBreak = grow(hBreak);
+		hContinue = grow(hContinue);
+		hSp = grow(hSp);
+		hCsp = grow(hCsp);
+		hAsp = grow(hAsp);
+		hContext = grow(hContext);
+	}
+
+	private static int[] grow(int[] array) {
+		int[] grown = new int[array.length*2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static <T> T[] grow(T[] array) {
+		return Arrays.copyOf(array, array.length*2);
+	}
+
+}
\ No newline at end of file
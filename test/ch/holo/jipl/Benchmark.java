@@ -0,0 +1,87 @@
+package ch.holo.jipl;
+
+/**
+ * What the benchmarks share: the generated sources they read, and timing a task over repeated runs.
+ * The benchmarks are classes with a main method, run like the tests but never by them, for instance
+ * "java -cp bin:test-bin ch.holo.jipl.LexerBenchmark 4 15", the size of each source in megabytes and the number of timed runs.
+ * They only use the lexer, parser and run calls older versions have too, so they can be compiled against one to compare,
+ * but for the token stream LexerBenchmark reads: older lexers only gave the whole list, that its list rows time.
+ */
+class Benchmark {
+
+	public static final String[] SOURCES = {"table", "code", "strings"};
+
+	private final int runs;
+
+	public Benchmark(int runs) {
+		this.runs = runs;
+	}
+
+	// a generated source of about the given number of chars
+	public static String source(String name, int chars) {
+		StringBuilder sb = new StringBuilder(chars+256);
+		switch(name) {
+			// a data table as generated scripts hold them, one list of literals and expressions by row
+			case "table":
+				sb.append("var table = [\n");
+				for(int i = 0; sb.length() < chars; i++)
+					sb.append("\t[").append(i).append(", ").append(i).append(".5, \"name").append(i).append("\", ").append(i)
+						.append(" * 2 + 1 - (3 / 4), -").append(i).append("],\n");
+				sb.append("\t[0]\n]\n");
+				break;
+			// functions, loops, conditions, comments and calls, with fresh names every time
+			case "code":
+				for(int i = 0; sb.length() < chars; i++)
+					sb.append("# block ").append(i).append("\n")
+						.append("function work").append(i).append("(n, step) {\n")
+						.append("\tvar total").append(i).append(" = 0\n")
+						.append("\tfor k = 0 to n by step {\n")
+						.append("\t\tif k > 10 and k < 1000 or not k == 3: total").append(i).append(" += k * 2 / 3\n")
+						.append("\t\telseif k >= 5: total").append(i).append(" -= 1\n")
+						.append("\t\telse { total").append(i).append(" = total").append(i).append(" * 1.5 }\n")
+						.append("\t}\n")
+						.append("\twhile total").append(i).append(" > 100 { total").append(i).append(" /= 2 }\n")
+						.append("\treturn [total").append(i).append(", \"done\", n]\n")
+						.append("}\n")
+						.append("print(work").append(i).append("(").append(i % 97).append(", 1) + sqrt(4))\n");
+				break;
+			// long literals and long names, where building a token char by char costs the most
+			case "strings":
+				for(int i = 0; sb.length() < chars; i++)
+					sb.append("var some_rather_long_identifier_").append(i).append(" = \"lorem ipsum dolor sit amet, consectetur adipiscing elit\\t")
+						.append("sed do eiusmod tempor incididunt ut labore et dolore magna aliqua\\n\" + other_identifier_name_").append(i)
+						.append(" * 12345.678\n");
+				break;
+			default: throw new IllegalArgumentException("No source called " + name);
+		}
+		return sb.toString();
+	}
+
+	// the median time of the task in nanoseconds, after as many untimed runs to let the JIT compile it,
+	// the garbage of one run is collected before the next so it is not billed to it
+	public long median(Runnable task) {
+		long[] times = new long[runs];
+		for(int i = 0; i < runs; i++) task.run();
+		for(int i = 0; i < runs; i++) {
+			System.gc();
+			long start = System.nanoTime();
+			task.run();
+			times[i] = System.nanoTime()-start;
+		}
+		java.util.Arrays.sort(times);
+		return times[runs/2];
+	}
+
+	public static void report(String what, int chars, long nanos, String more) {
+		System.out.println(String.format("%-28s %7.2f MB %9.1f ms %9.2f MB/s  %s", what, chars/1e6, nanos/1e6, chars*1e3/nanos, more));
+	}
+
+	public static int megabytes(String[] args) {
+		return (int) ((args.length > 0?Double.parseDouble(args[0]):4)*1000000);
+	}
+
+	public static int runs(String[] args) {
+		return args.length > 1?Integer.parseInt(args[1]):10;
+	}
+
+}
@@ -0,0 +1,57 @@
+package ch.holo.jipl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * What the tests share: running code with what it prints captured, and counting the checks that failed.
+ * The tests are classes with a main method, compiled against the sources and run from the project folder,
+ * for instance "java -cp bin:test-bin ch.holo.jipl.ConformanceTest", exiting with 1 when a check failed.
+ */
+class Check {
+
+	private final String name;
+	private int checks, failures;
+
+	public Check(String name) {
+		this.name = name;
+	}
+
+	// what the code prints, errors included, with the lines ending in \n
+	public static String output(Runnable code) {
+		PrintStream out = System.out, err = System.err;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			PrintStream capture = new PrintStream(bytes, true, "UTF-8");
+			System.setOut(capture);
+			System.setErr(capture);
+			code.run();
+			capture.flush();
+			return bytes.toString("UTF-8").replace("\r\n", "\n");
+		} catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+	}
+
+	public boolean equal(String what, Object expected, Object actual) {
+		checks++;
+		if(expected == null?actual == null:expected.equals(actual)) return true;
+		failures++;
+		System.out.println("FAIL " + what + "\n  expected: " + indent(expected) + "\n  actual:   " + indent(actual));
+		return false;
+	}
+
+	private static String indent(Object text) {
+		return String.valueOf(text).replace("\n", "\n            ");
+	}
+
+	public void done() {
+		System.out.println(name + ": " + (checks-failures) + "/" + checks + " checks passed");
+		if(failures > 0) System.exit(1);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package ch.holo.jipl;
+
+/**
+ * How fast a loop of conditions runs on each engine, the medians of the timed runs, for instance
+ * "java -cp bin:test-bin ch.holo.jipl.ConditionBenchmark 50 10", the number of rounds over the list and the number of timed runs.
+ * Half of its "and" and "or" have a right operand their left one already decides about, a call to a function that loops.
+ */
+public class ConditionBenchmark {
+
+	public static String source(int rounds) {
+		return "var data = []\n" +
+				"for i = 0 to 1200 { data.add(modulo(i, 7)) }\n" +
+				"function expensive(v) {\n" +
+				"\tvar s = 0\n" +
+				"\tfor k = 0 to 20 { s += v * k }\n" +
+				"\treturn s > 0\n" +
+				"}\n" +
+				"var hits = 0\n" +
+				"for round = 0 to " + rounds + " {\n" +
+				"\tfor i = 0 to 1200 {\n" +
+				"\t\tif i < data.size() and data.get(i) > 3 { hits += 1 }\n" +
+				"\t\tif i > 2000 and expensive(i) { hits += 1000 }\n" +
+				"\t\tif i >= 0 or expensive(i) { hits += 1 }\n" +
+				"\t}\n" +
+				"}\n";
+	}
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0?Integer.parseInt(args[0]):50;
+		Benchmark benchmark = new Benchmark(Benchmark.runs(args));
+		String source = source(rounds);
+		boolean bytecode = JIPL.bytecode;
+		try {
+			for(boolean vm:new boolean[] {false, true}) {
+				JIPL.bytecode = vm;
+				Object[] hits = new Object[1];
+				long nanos = benchmark.median(() -> hits[0] = run(source));
+				System.out.println(String.format("%-28s %9.1f ms  %s hits", "conditions" + (vm?" (vm)":" (interpreter)"), nanos/1e6, hits[0]));
+			}
+		} finally {
+			JIPL.bytecode = bytecode;
+		}
+	}
+
+	private static Object run(String source) {
+		Context context = JIPL.getGlobalContext();
+		JIPL.run(source, context, "bench");
+		return context.get("hits");
+	}
+
+}
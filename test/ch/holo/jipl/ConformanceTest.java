@@ -0,0 +1,41 @@
+package ch.holo.jipl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Runs every script of test/scripts on the {@link Interpreter} and on the {@link VM},
+ * both must print exactly what the .out file next to the script holds.
+ */
+public class ConformanceTest {
+
+	public static void main(String[] args) throws IOException {
+		File folder = new File(args.length > 0?args[0]:"test/scripts");
+		File[] scripts = folder.listFiles((dir, name) -> name.endsWith(".jipl"));
+		if(scripts == null || scripts.length == 0) throw new IllegalArgumentException("No script in " + folder.getAbsolutePath());
+		Arrays.sort(scripts);
+
+		Check check = new Check("Conformance");
+		boolean bytecode = JIPL.bytecode;
+		try {
+			for(File script:scripts) {
+				String name = script.getName().substring(0, script.getName().length()-5);
+				String expected = new String(Files.readAllBytes(new File(folder, name + ".out").toPath()), StandardCharsets.UTF_8).replace("\r\n", "\n");
+				check.equal(name + " (interpreter)", expected, run(script, false));
+				check.equal(name + " (vm)", expected, run(script, true));
+			}
+		} finally { JIPL.bytecode = bytecode; }
+		check.done();
+	}
+
+	// a fresh global context and no cached tree, so one run does not see what the last one left
+	private static String run(File script, boolean bytecode) {
+		JIPL.bytecode = bytecode;
+		JIPL.scripts.clear();
+		return Check.output(() -> JIPL.run(script, JIPL.getGlobalContext()));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package ch.holo.jipl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import ch.holo.jipl.Interpreter.GlobalCache;
+import ch.holo.jipl.Parser.Node;
+
+/**
+ * Every call of a function reads its globals from a context of its own, the read of a global must still hit the entry the first call made,
+ * until a name is defined in the global context, and give what the global holds after an assignment, on both engines.
+ */
+public class GlobalCacheTest {
+
+	private static final String SOURCE = "var scale = 3\n" +
+			"var result = 0\n" +
+			"function f(n) { return n * scale }\n";
+
+	private static final int CALLS = 50;
+
+	public static void main(String[] args) throws Exception {
+		Check check = new Check("GlobalCache");
+		boolean bytecode = JIPL.bytecode, cache = JIPL.cache;
+		JIPL.cache = true;
+		try {
+			for(boolean vm:new boolean[] {false, true}) {
+				JIPL.bytecode = vm;
+				String engine = vm?" (vm)":" (interpreter)";
+
+				JIPL.scripts.clear();
+				Context context = JIPL.getGlobalContext();
+				JIPL.run(SOURCE, context, null);
+				ArrayList<GlobalCache> caches = caches(JIPL.scripts.get(SOURCE, null).node);
+				check.equal("global reads in the function" + engine, 1, caches.size());
+				GlobalCache site = caches.get(0);
+
+				check.equal("first call" + engine, "6", call(context, 2));
+				Object first = site.entry;
+				check.equal("entry made by the first call" + engine, true, first != null);
+				for(int i = 0; i < CALLS; i++) call(context, i);
+				check.equal("entry still hit after " + CALLS + " calls" + engine, true, site.entry == first);
+
+				JIPL.run("scale = 4", context, null);
+				check.equal("call after an assignment" + engine, "8", call(context, 2));
+				check.equal("entry kept by an assignment" + engine, true, site.entry == first);
+
+				JIPL.run("var other = 1", context, null);
+				check.equal("call after a definition" + engine, "8", call(context, 2));
+				check.equal("entry made again after a definition" + engine, true, site.entry != first && site.entry != null);
+			}
+		} finally {
+			JIPL.bytecode = bytecode;
+			JIPL.cache = cache;
+		}
+		check.done();
+	}
+
+	private static String call(Context context, int n) {
+		JIPL.run("var result = f(" + n + ")", context, null);
+		return String.valueOf(context.get("result"));
+	}
+
+	// the global reads of the tree, found through the fields of its nodes
+	private static ArrayList<GlobalCache> caches(Object root) throws IllegalAccessException {
+		ArrayList<GlobalCache> caches = new ArrayList<GlobalCache>();
+		collect(root, caches, new IdentityHashMap<Object, Boolean>());
+		return caches;
+	}
+
+	private static void collect(Object o, ArrayList<GlobalCache> caches, IdentityHashMap<Object, Boolean> seen) throws IllegalAccessException {
+		if(o == null || seen.put(o, true) != null) return;
+		if(o instanceof GlobalCache) caches.add((GlobalCache) o);
+		else if(o instanceof Object[]) for(Object e:(Object[]) o) collect(e, caches, seen);
+		else if(o instanceof Iterable) for(Object e:(Iterable<?>) o) collect(e, caches, seen);
+		else if(o instanceof Node)
+			for(Class<?> c = o.getClass(); c != Object.class; c = c.getSuperclass())
+				for(Field f:c.getDeclaredFields()) {
+					if(Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) continue;
+					f.setAccessible(true);
+					collect(f.get(o), caches, seen);
+				}
+	}
+
+}
@@ -0,0 +1,59 @@
+package ch.holo.jipl;
+
+/**
+ * The functions built from one definition, a method bound to each instance or a closure made on each call, share what the {@link JIT} compiles:
+ * runs them hot on both engines, they must give what they give without the JIT, with one class defined per definition.
+ */
+public class JITTest {
+
+	private static final String SOURCE = "object Ent(x) {\n" +
+			"  function step(dt) {\n" +
+			"    var v = dt * 2\n" +
+			"    return v + 1\n" +
+			"  }\n" +
+			"}\n" +
+			"function outer(n) {\n" +
+			"  function inner(a) { return a * 2 + 1 }\n" +
+			"  var s = 0\n" +
+			"  for k = 0 to 21 { s += inner(k) }\n" +
+			"  s += n\n" +
+			"  return s\n" +
+			"}\n" +
+			"var result = 0\n" +
+			"for i = 0 to 2000 {\n" +
+			"  var e = new Ent(i)\n" +
+			"  for k = 0 to 21 { result += e.step(k) }\n" +
+			"  result += outer(i)\n" +
+			"}\n";
+
+	public static void main(String[] args) {
+		Check check = new Check("JIT");
+		boolean bytecode = JIPL.bytecode, jit = JIPL.jit;
+		try {
+			for(boolean vm:new boolean[] {false, true}) {
+				JIPL.bytecode = vm;
+				String engine = vm?" (vm)":" (interpreter)";
+
+				JIPL.jit = false;
+				String expected = result();
+				JIPL.jit = true;
+				int before = JIT.count.get();
+				check.equal("result of the compiled functions" + engine, expected, result());
+				check.equal("classes defined for 2000 instances and 2000 closures" + engine, 2, JIT.count.get()-before);
+			}
+		} finally {
+			JIPL.bytecode = bytecode;
+			JIPL.jit = jit;
+		}
+		check.done();
+	}
+
+	// a fresh tree every time, so a definition is compiled again
+	private static String result() {
+		JIPL.scripts.clear();
+		Context context = JIPL.getGlobalContext();
+		JIPL.run(SOURCE, context, null);
+		return String.valueOf(context.get("result"));
+	}
+
+}
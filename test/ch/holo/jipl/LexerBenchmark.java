@@ -0,0 +1,27 @@
+package ch.holo.jipl;
+
+/**
+ * How fast the {@link Lexer} turns each generated source into tokens, the median of the timed runs:
+ * read one at a time, as the {@link Parser} pulls them while it parses, and gathered in a list by {@link Lexer#getTokens(String, String)}.
+ */
+public class LexerBenchmark {
+
+	public static void main(String[] args) {
+		Benchmark benchmark = new Benchmark(Benchmark.runs(args));
+		int chars = Benchmark.megabytes(args);
+		for(String name:Benchmark.SOURCES) {
+			String source = Benchmark.source(name, chars);
+			int[] tokens = new int[1];
+			long stream = benchmark.median(() -> {
+				Lexer lexer = new Lexer(source, "bench");
+				int count = 0;
+				while(lexer.next() != null) count++;
+				tokens[0] = count;
+			});
+			Benchmark.report("lex " + name, source.length(), stream, tokens[0] + " tokens");
+			long list = benchmark.median(() -> tokens[0] = Lexer.getTokens(source, "bench").size());
+			Benchmark.report("lex to list " + name, source.length(), list, tokens[0] + " tokens");
+		}
+	}
+
+}
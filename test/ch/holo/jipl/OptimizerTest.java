@@ -0,0 +1,116 @@
+package ch.holo.jipl;
+
+import ch.holo.jipl.Optimizer.Pass;
+import ch.holo.jipl.Parser.ParseResult;
+
+/**
+ * Runs programs with each pass of the {@link Optimizer} alone and with none at all, on both engines, and they must print the same.
+ * Each pass must also rewrite the code it is meant for, which shows in the bytecode the tree compiles to,
+ * and a global folded by one run must not leak into the trees of the next runs against the same context.
+ */
+public class OptimizerTest {
+
+	private static final String[] PROGRAMS = {
+		// folding
+		"print(2*3+1)\nprint(-(4/2))\nprint(not 0)\nprint(1 and 0 or 1)\nprint(sqrt(16)+1)\nprint(max(2, 7)*2)",
+		"var r = 2\nprint(2*3*r)\nvar PI = 3\nprint(2*PI*r)",
+		"function f(): sqrt(4)\nprint(f())\nsqrt = function(x): x\nprint(f())",
+		// pruning
+		"if 0 { print(1) } elseif 1 { print(2) } else { print(3) }\nwhile 0 { print(4) }\nif 1 == 2: print(5)\nprint(6)",
+		"var x = 3\nif x > 2 and 0 { print(1) } elseif x { print(2) }\nwhile 1 { x++; if x > 5: break }\nprint(x)",
+		// hoisting
+		"function f(a, b) {\n  var s = 0\n  for i = 0 to 50 { s += a*b+i }\n  return s\n}\nprint(f(2, 3))\nprint(f(4, 5))",
+		"function f(a) {\n  var s = 0\n  var i = 0\n  while i < 10 {\n    s += a*a\n    if i == 4: a = 1\n    i++\n  }\n  return s\n}\nprint(f(3))",
+		"function f(n) {\n  var s = 0\n  for i = 0 to n {\n    var g = function(): n = n\n    s += n*2\n  }\n  return s\n}\nprint(f(4))",
+	};
+
+	public static void main(String[] args) {
+		Check check = new Check("Optimizer");
+		boolean optimize = JIPL.optimize, cache = JIPL.cache, bytecode = JIPL.bytecode;
+		boolean[] enabled = new boolean[Optimizer.PASSES.size()];
+		for(int i = 0; i < enabled.length; i++) enabled[i] = Optimizer.PASSES.get(i).enabled;
+		try {
+			for(String program:PROGRAMS) preserved(check, program);
+
+			rewrites(check, Optimizer.FOLD_CONSTANTS, "print(2*3+1)", "BINARY");
+			rewrites(check, Optimizer.REMOVE_DEAD_BRANCHES, "if 0 { print(1) }\nwhile 0 { print(2) }", "JUMP_IF_FALSE");
+			only(Optimizer.FOLD_CONSTANTS);
+			check.equal("a pure native call on literals is folded", true, code("print(sqrt(16))").contains("FOLDED"));
+			check.equal("a call of a user function is not folded", false, code("function sqr(x): x*x\nprint(sqr(4))").contains("FOLDED"));
+			String loop = "function f(a, b) {\n  var s = 0\n  for i = 0 to 9 { s += a*b }\n  return s\n}";
+			only(Optimizer.HOIST_INVARIANTS);
+			check.equal("hoisting wraps the invariant of a loop", true, code(loop).contains("INVARIANT"));
+			only();
+			check.equal("hoisting off leaves the loop alone", false, code(loop).contains("INVARIANT"));
+
+			for(boolean vm:new boolean[] {false, true}) {
+				JIPL.bytecode = vm;
+				String engine = vm?" (vm)":" (interpreter)";
+				only(Optimizer.FOLD_CONSTANTS, Optimizer.REMOVE_DEAD_BRANCHES, Optimizer.HOIST_INVARIANTS);
+				check.equal("a global written by a later run" + engine, "20\n", runs("var speed = 5", "function get() { return speed*2 }", "speed = 10; print(get())"));
+				check.equal("a native rebound by a later run" + engine, "2\n9\n", runs("function f(): sqrt(4)", "print(f())", "sqrt = function(x): 9", "print(f())"));
+				check.equal("an optimized tree run against another context" + engine, "4\n4\n", runs("print(sqrt(16))") + runs("print(sqrt(16))"));
+			}
+		} finally {
+			JIPL.optimize = optimize;
+			JIPL.cache = cache;
+			JIPL.bytecode = bytecode;
+			for(int i = 0; i < enabled.length; i++) Optimizer.PASSES.get(i).enabled = enabled[i];
+		}
+		check.done();
+	}
+
+	// the program prints the same with every pass alone as with no optimization, on both engines
+	private static void preserved(Check check, String program) {
+		for(boolean vm:new boolean[] {false, true}) {
+			JIPL.bytecode = vm;
+			String engine = vm?"vm":"interpreter";
+			JIPL.optimize = false;
+			String expected = runs(program);
+			JIPL.optimize = true;
+			for(Pass pass:Optimizer.PASSES) {
+				only(pass);
+				check.equal(pass + " (" + engine + ") on\n" + program, expected, runs(program));
+			}
+			only();
+			check.equal("no pass (" + engine + ") on\n" + program, expected, runs(program));
+		}
+	}
+
+	// the op the code compiles to with the pass off is gone once it is on
+	private static void rewrites(Check check, Pass pass, String program, String op) {
+		only();
+		check.equal(pass + " off keeps " + op, true, code(program).contains(op));
+		only(pass);
+		check.equal(pass + " on removes " + op, false, code(program).contains(op));
+	}
+
+	private static void only(Pass... passes) {
+		for(Pass pass:Optimizer.PASSES) pass.enabled = false;
+		for(Pass pass:passes) pass.enabled = true;
+	}
+
+	// optimized against a fresh global context, as a run with the cache off does, the bodies of the functions listed after the code
+	private static String code(String program) {
+		ParseResult pr = JIPL.getParseResult(program, null);
+		return listing(Compiler.compile(Optimizer.optimize(pr.node, JIPL.getGlobalContext())));
+	}
+
+	private static String listing(Bytecode code) {
+		String str = code.toString();
+		for(Object constant:code.getConstants())
+			if(constant instanceof Object[] && ((Object[]) constant).length == 3 && ((Object[]) constant)[2] instanceof Bytecode)
+				str += listing((Bytecode) ((Object[]) constant)[2]);
+		return str;
+	}
+
+	// the lines run one after the other against one global context, with the cache off so each is optimized against it
+	private static String runs(String... lines) {
+		JIPL.cache = false;
+		Context context = JIPL.getGlobalContext();
+		return Check.output(() -> {
+			for(String line:lines) JIPL.run(line, context, null);
+		});
+	}
+
+}
@@ -0,0 +1,29 @@
+package ch.holo.jipl;
+
+import java.util.ArrayList;
+
+import ch.holo.jipl.Parser.ParseResult;
+
+/**
+ * How fast the {@link Parser} builds the tree of each generated source, from tokens lexed beforehand,
+ * and how fast the source goes from text to tree, the medians of the timed runs.
+ */
+public class ParserBenchmark {
+
+	public static void main(String[] args) {
+		Benchmark benchmark = new Benchmark(Benchmark.runs(args));
+		int chars = Benchmark.megabytes(args);
+		for(String name:Benchmark.SOURCES) {
+			String source = Benchmark.source(name, chars);
+			ArrayList<Token> tokens = Lexer.getTokens(source, "bench");
+			ParseResult checked = (ParseResult) new Parser(tokens).parse();
+			if(checked.error != null) throw new IllegalStateException("The " + name + " source does not parse: " + checked.error);
+
+			long parse = benchmark.median(() -> new Parser(tokens).parse());
+			Benchmark.report("parse " + name, source.length(), parse, tokens.size() + " tokens");
+			long both = benchmark.median(() -> new Parser(Lexer.getTokens(source, "bench")).parse());
+			Benchmark.report("lex and parse " + name, source.length(), both, "");
+		}
+	}
+
+}
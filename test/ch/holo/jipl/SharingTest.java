@@ -0,0 +1,102 @@
+package ch.holo.jipl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.holo.jipl.Interpreter.InlineCache;
+import ch.holo.jipl.Parser.Node;
+
+/**
+ * A cached script is one tree, with the caches of its nodes, shared by every run of it.
+ * Runs it from several threads at once on both engines, each against its own context, and they must all compute what a lone run does,
+ * then checks that its member accesses still hit their caches after many runs, each of which defines the classes anew.
+ */
+public class SharingTest {
+
+	private static final String SOURCE = "object Point(x, y) {\n" +
+			"  function norm2() { return x*x + y*y }\n" +
+			"}\n" +
+			"object Point3(x, y, z) extends Point {\n" +
+			"  super(x, y)\n" +
+			"  function norm2() { return x*x + y*y + z*z }\n" +
+			"}\n" +
+			"function twice(n): n*2\n" +
+			"var result = 0\n" +
+			"for i = 0 to 300 {\n" +
+			"  var p = new Point(i, 2)\n" +
+			"  var q = new Point3(1, i, 3)\n" +
+			"  result += p.norm2() + q.norm2() + p.x + q.z + twice(i)\n" +
+			"}\n";
+
+	private static final int THREADS = 4, RUNS = 40;
+
+	public static void main(String[] args) throws Exception {
+		Check check = new Check("Sharing");
+		boolean bytecode = JIPL.bytecode, cache = JIPL.cache;
+		JIPL.cache = true;
+		try {
+			for(boolean vm:new boolean[] {false, true}) {
+				JIPL.bytecode = vm;
+				String engine = vm?" (vm)":" (interpreter)";
+
+				JIPL.scripts.clear();
+				String expected = result();
+				JIPL.scripts.clear();
+				ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+				ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+				for(int i = 0; i < THREADS*RUNS; i++)
+					results.add(pool.submit((Callable<String>) SharingTest::result));
+				int same = 0;
+				for(Future<String> result:results)
+					if(expected.equals(result.get())) same++;
+				pool.shutdown();
+				check.equal("runs at the same time computing " + expected + engine, THREADS*RUNS, same);
+
+				JIPL.scripts.clear();
+				for(int i = 0; i < RUNS; i++) result();
+				int megamorphic = 0;
+				for(InlineCache site:caches(JIPL.scripts.get(SOURCE, null).node))
+					if(site.entries == InlineCache.MEGAMORPHIC) megamorphic++;
+				check.equal("member accesses given up after " + RUNS + " runs" + engine, 0, megamorphic);
+			}
+		} finally {
+			JIPL.bytecode = bytecode;
+			JIPL.cache = cache;
+		}
+		check.done();
+	}
+
+	private static String result() {
+		Context context = JIPL.getGlobalContext();
+		JIPL.run(SOURCE, context, null);
+		return String.valueOf(context.get("result"));
+	}
+
+	// the inline caches of the tree, found through the fields of its nodes
+	private static ArrayList<InlineCache> caches(Object root) throws IllegalAccessException {
+		ArrayList<InlineCache> caches = new ArrayList<InlineCache>();
+		collect(root, caches, new IdentityHashMap<Object, Boolean>());
+		return caches;
+	}
+
+	private static void collect(Object o, ArrayList<InlineCache> caches, IdentityHashMap<Object, Boolean> seen) throws IllegalAccessException {
+		if(o == null || seen.put(o, true) != null) return;
+		if(o instanceof InlineCache) caches.add((InlineCache) o);
+		else if(o instanceof Object[]) for(Object e:(Object[]) o) collect(e, caches, seen);
+		else if(o instanceof Iterable) for(Object e:(Iterable<?>) o) collect(e, caches, seen);
+		else if(o instanceof Node)
+			for(Class<?> c = o.getClass(); c != Object.class; c = c.getSuperclass())
+				for(Field f:c.getDeclaredFields()) {
+					if(Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) continue;
+					f.setAccessible(true);
+					collect(f.get(o), caches, seen);
+				}
+	}
+
+}